@@ -1,20 +1,48 @@
 package com.function;
 
+import com.function.pipeline.TransformPipeline;
 import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.HttpMethod;
 import com.microsoft.azure.functions.HttpRequestMessage;
 import com.microsoft.azure.functions.HttpResponseMessage;
 import com.microsoft.azure.functions.HttpStatus;
+import com.microsoft.azure.functions.RetryContext;
 import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.Cardinality;
+import com.microsoft.azure.functions.annotation.EventHubTrigger;
+import com.microsoft.azure.functions.annotation.ExponentialBackoffRetry;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
- * Azure Functions with HTTP Trigger.
+ * Azure Functions with HTTP and Event Hub Triggers.
+ * The worker obtains instances from the Spring application context through SpringFunctionInstanceInjector.
  */
+@Component
 public class Function {
+
+    // Consume-transform-republish pipeline; only needed by the Event Hub triggered function
+    private final TransformPipeline transformPipeline;
+
+    public Function() {
+        this(null);
+    }
+
+    /**
+     * Creates the functions with the pipeline used by the Event Hub triggered function.
+     *
+     * @param transformPipeline The consume-transform-republish pipeline.
+     */
+    @Autowired
+    public Function(TransformPipeline transformPipeline) {
+        this.transformPipeline = transformPipeline;
+    }
+
     /**
      * This function listens at endpoint "/api/HttpExample". Two ways to invoke it using "curl" command in bash:
      * 1. curl -d "HTTP Body" {your host}/api/HttpExample
@@ -40,4 +68,44 @@ public class Function {
             return request.createResponseBuilder(HttpStatus.OK).body("Hello, " + name).build();
         }
     }
+
+    /**
+     * This function is triggered by batches of events on the input Event Hub. Every batch is transformed
+     * and republished to the output Event Hub as one batch, and the function fails unless the whole output
+     * batch is acknowledged.
+     *
+     * The host checkpoints a batch whether or not the function succeeds, so a failure alone would skip the batch.
+     * Only a failed publish fails the function; events that can never be processed are dead-lettered by the
+     * pipeline. A failed batch is run again, with backoff, before the host moves on, and once the retries are
+     * used up it is dead-lettered rather than lost or left to hold up its partition.
+     */
+    @FunctionName("EventHubTransformPipeline")
+    @ExponentialBackoffRetry(maxRetryCount = 8, minimumInterval = "00:00:02", maximumInterval = "00:05:00")
+    public void runPipeline(
+            @EventHubTrigger(
+                name = "events",
+                eventHubName = "%EVENTHUB_INPUT_NAME%",
+                connection = "EventHubInputConnection",
+                consumerGroup = "%EVENTHUB_INPUT_CONSUMER_GROUP%",
+                cardinality = Cardinality.MANY)
+                List<String> events,
+            final ExecutionContext context) {
+        if (transformPipeline == null) {
+            throw new IllegalStateException("No TransformPipeline configured for " + context.getFunctionName());
+        }
+        context.getLogger().info("Java Event Hub trigger received " + events.size() + " events.");
+        try {
+            transformPipeline.process(events, context);
+        } catch (RuntimeException e) {
+            if (!isLastAttempt(context)) {
+                throw e;
+            }
+            transformPipeline.deadLetter(events, e, context);
+        }
+    }
+
+    private static boolean isLastAttempt(ExecutionContext context) {
+        RetryContext retryContext = context.getRetryContext();
+        return retryContext != null && retryContext.getRetrycount() >= retryContext.getMaxretrycount();
+    }
 }
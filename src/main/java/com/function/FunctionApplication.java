@@ -0,0 +1,11 @@
+package com.function;
+
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * Spring Boot application holding the beans behind the functions.
+ * It is started inside the Functions worker by SpringFunctionInstanceInjector, not through a main method.
+ */
+@SpringBootApplication
+public class FunctionApplication {
+}
@@ -0,0 +1,56 @@
+package com.function;
+
+import com.microsoft.azure.functions.spi.inject.FunctionInstanceInjector;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import java.util.function.Supplier;
+
+/**
+ * Supplies the Functions worker with function instances taken from the Spring application context,
+ * so that classes such as Function get their dependencies injected.
+ * The worker finds this injector through META-INF/services; the application context is started on
+ * the first invocation and shared by every function instance afterwards.
+ */
+public class SpringFunctionInstanceInjector implements FunctionInstanceInjector {
+
+    private final Supplier<ApplicationContext> contextFactory;
+    private volatile ApplicationContext applicationContext;
+
+    public SpringFunctionInstanceInjector() {
+        this(() -> SpringApplication.run(FunctionApplication.class));
+    }
+
+    /**
+     * @param contextFactory Creates the application context on first use.
+     */
+    SpringFunctionInstanceInjector(Supplier<ApplicationContext> contextFactory) {
+        this.contextFactory = contextFactory;
+    }
+
+    /**
+     * Returns the bean of the given function class.
+     *
+     * @param functionClass The class declaring the function being invoked.
+     * @return The instance to invoke the function on.
+     * @throws Exception If the application context cannot be started or holds no such bean.
+     */
+    @Override
+    public <T> T getInstance(Class<T> functionClass) throws Exception {
+        return applicationContext().getBean(functionClass);
+    }
+
+    private ApplicationContext applicationContext() {
+        ApplicationContext context = applicationContext;
+        if (context == null) {
+            synchronized (this) {
+                context = applicationContext;
+                if (context == null) {
+                    context = contextFactory.get();
+                    applicationContext = context;
+                }
+            }
+        }
+        return context;
+    }
+}
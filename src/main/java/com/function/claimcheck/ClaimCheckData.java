@@ -0,0 +1,91 @@
+package com.function.claimcheck;
+
+import io.cloudevents.CloudEventData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * CloudEventData whose bytes live in a ClaimCheckStore.
+ * Nothing is read until toBytes is called, and the result is cached afterwards.
+ * Consumers that can process the payload as a stream should use openChannel instead,
+ * which never materializes the payload on the heap.
+ */
+public class ClaimCheckData implements CloudEventData {
+
+    private final ClaimCheckStore store;
+    private final String reference;
+    private final long size;
+
+    // Loaded on first access
+    private volatile byte[] bytes;
+
+    ClaimCheckData(ClaimCheckStore store, String reference, long size) {
+        this.store = store;
+        this.reference = reference;
+        this.size = size;
+    }
+
+    /**
+     * @return The claim-check reference of the payload in the store.
+     */
+    public String getReference() {
+        return reference;
+    }
+
+    /**
+     * Opens a channel over the stored payload. The caller is responsible for closing it.
+     *
+     * @return A channel positioned at the start of the payload.
+     * @throws IOException If the payload cannot be read from the store.
+     */
+    public ReadableByteChannel openChannel() throws IOException {
+        return store.open(reference);
+    }
+
+    @Override
+    public byte[] toBytes() {
+        byte[] loaded = bytes;
+        if (loaded == null) {
+            synchronized (this) {
+                loaded = bytes;
+                if (loaded == null) {
+                    loaded = load();
+                    bytes = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Reads the payload from the store, sizing the buffer exactly when the size is known.
+     */
+    private byte[] load() {
+        try (ReadableByteChannel channel = store.open(reference)) {
+            if (size >= 0) {
+                ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size));
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Keep reading until the buffer is full or the channel is exhausted
+                }
+                if (buffer.hasRemaining()) {
+                    throw new IOException("Claim-check payload " + reference + " is shorter than " + size + " bytes");
+                }
+                return buffer.array();
+            }
+
+            try (InputStream in = Channels.newInputStream(channel)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                in.transferTo(out);
+                return out.toByteArray();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to resolve claim-check payload " + reference, e);
+        }
+    }
+}
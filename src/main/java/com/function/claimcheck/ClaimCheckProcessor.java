@@ -0,0 +1,156 @@
+package com.function.claimcheck;
+
+import com.function.util.ContentTypes;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.CloudEventData;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Implements the claim-check pattern for CloudEvents.
+ * On the publishing side, payloads above a size threshold are moved to a ClaimCheckStore and
+ * replaced by a reference extension, so the message sent to Event Hubs stays small.
+ * On the consuming side, events carrying a reference are given lazily-resolved data that is
+ * only read back from the store when the payload is actually accessed.
+ *
+ * Offloaded payloads are written before the event is sent. A publisher discards a payload only when its
+ * event certainly never reached the broker, i.e. serialization failed or the throughput limiter rejected it.
+ * A send that failed or timed out may still have been accepted, so its payload is kept; payloads orphaned
+ * that way are left to a retention (TTL or lifecycle) policy on the store.
+ */
+@Slf4j
+public class ClaimCheckProcessor {
+
+    // CloudEvents extension names: lowercase alphanumeric, at most 20 characters
+    public static final String REFERENCE_EXTENSION = "claimcheckref";
+    public static final String SIZE_EXTENSION = "claimchecksize";
+
+    private final ClaimCheckStore store;
+    private final long thresholdBytes;
+
+    /**
+     * Creates a claim-check processor.
+     *
+     * @param store          The store that holds offloaded payloads.
+     * @param thresholdBytes Payloads whose encoded size in the JSON envelope is strictly larger than this are offloaded.
+     */
+    public ClaimCheckProcessor(ClaimCheckStore store, long thresholdBytes) {
+        this.store = store;
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    /**
+     * Creates a processor that never offloads and leaves events untouched.
+     *
+     * @return A disabled ClaimCheckProcessor.
+     */
+    public static ClaimCheckProcessor disabled() {
+        return new ClaimCheckProcessor(null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Offloads the payload of an event to the store if its encoded size exceeds the threshold.
+     *
+     * @param event The CloudEvent about to be published.
+     * @return The original event if it is small enough, otherwise a copy carrying a reference instead of data.
+     * @throws UncheckedIOException If the payload cannot be written to the store.
+     */
+    public CloudEvent offload(CloudEvent event) {
+        CloudEventData data = event.getData();
+        if (store == null || data == null) {
+            return event;
+        }
+
+        byte[] payload = data.toBytes();
+        if (encodedSize(event.getDataContentType(), payload.length) <= thresholdBytes) {
+            return event;
+        }
+
+        try {
+            // Wrap rather than copy; the store streams the buffer straight into its channel
+            String reference = store.put(ByteBuffer.wrap(payload));
+            return CloudEventBuilder.v1(event)
+                .withoutData()
+                .withExtension(REFERENCE_EXTENSION, reference)
+                .withExtension(SIZE_EXTENSION, payload.length)
+                .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to offload payload of event " + event.getId(), e);
+        }
+    }
+
+    /**
+     * Restores the payload of an event that was offloaded by this processor.
+     * The store is not touched until the data of the returned event is read.
+     *
+     * @param event The CloudEvent as received from Event Hubs.
+     * @return The original event if it carries no reference, otherwise a copy with lazily-resolved data.
+     */
+    public CloudEvent resolve(CloudEvent event) {
+        Object reference = event.getExtension(REFERENCE_EXTENSION);
+        if (reference == null) {
+            return event;
+        }
+        if (store == null) {
+            throw new IllegalStateException("Event " + event.getId() + " carries a claim-check reference but no store is configured");
+        }
+
+        Object size = event.getExtension(SIZE_EXTENSION);
+        ClaimCheckData data = new ClaimCheckData(
+            store,
+            reference.toString(),
+            size == null ? -1 : Long.parseLong(size.toString()));
+
+        return CloudEventBuilder.v1(event)
+            .withoutExtension(REFERENCE_EXTENSION)
+            .withoutExtension(SIZE_EXTENSION)
+            .withData(data)
+            .build();
+    }
+
+    /**
+     * Removes the offloaded payload of an event that was certainly never sent.
+     * It must not be called after a send attempt, which may have been accepted by the broker even if it failed.
+     * Failing to remove the payload is logged rather than thrown, so it never hides the publish failure.
+     *
+     * @param reference The reference carried by the offloaded event, or null if nothing was offloaded.
+     */
+    public void discard(String reference) {
+        if (store == null || reference == null) {
+            return;
+        }
+        try {
+            store.delete(reference);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to discard claim-check payload {}: {}", reference, e.getMessage());
+        }
+    }
+
+    /**
+     * @param event A CloudEvent returned by offload.
+     * @return The claim-check reference the event carries, or null if its payload was not offloaded.
+     */
+    public static String referenceOf(CloudEvent event) {
+        Object reference = event.getExtension(REFERENCE_EXTENSION);
+        return reference == null ? null : reference.toString();
+    }
+
+    /**
+     * Estimates the size a payload takes inside a structured-mode JSON envelope. JSON data is embedded as-is;
+     * any other data, text included, is written base64-encoded as data_base64, which grows it by a third.
+     *
+     * @param contentType The datacontenttype of the event, or null.
+     * @param length      The raw payload size.
+     * @return The encoded payload size.
+     */
+    static long encodedSize(String contentType, long length) {
+        if (ContentTypes.isJson(contentType)) {
+            return length;
+        }
+        return 4 * ((length + 2) / 3);
+    }
+}
@@ -0,0 +1,38 @@
+package com.function.claimcheck;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Pluggable blob store used by the claim-check stage to hold payloads that are
+ * too large to travel inside an Event Hubs message.
+ */
+public interface ClaimCheckStore {
+
+    /**
+     * Writes a payload to the store.
+     *
+     * @param payload The payload to store, read from its current position to its limit.
+     * @return An opaque reference that can later be passed to open or delete.
+     * @throws IOException If the payload cannot be written.
+     */
+    String put(ByteBuffer payload) throws IOException;
+
+    /**
+     * Opens a channel over a previously stored payload. The caller is responsible for closing it.
+     *
+     * @param reference The reference returned by put.
+     * @return A channel positioned at the start of the payload.
+     * @throws IOException If the payload does not exist or cannot be read.
+     */
+    ReadableByteChannel open(String reference) throws IOException;
+
+    /**
+     * Removes a stored payload. Deleting a reference that does not exist is not an error.
+     *
+     * @param reference The reference returned by put.
+     * @throws IOException If the payload cannot be removed.
+     */
+    void delete(String reference) throws IOException;
+}
@@ -0,0 +1,63 @@
+package com.function.claimcheck;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * ClaimCheckStore backed by a local directory, intended for local development and tests.
+ * Payloads are written straight from the caller's buffer through a FileChannel,
+ * so no additional copy of the payload is made on the heap.
+ */
+public class FileSystemClaimCheckStore implements ClaimCheckStore {
+
+    private final Path directory;
+
+    /**
+     * Creates a store rooted at the given directory, creating it if necessary.
+     *
+     * @param directory The directory in which payloads are stored.
+     * @throws IOException If the directory cannot be created.
+     */
+    public FileSystemClaimCheckStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String put(ByteBuffer payload) throws IOException {
+        String reference = UUID.randomUUID().toString();
+        try (FileChannel channel = FileChannel.open(resolve(reference),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (payload.hasRemaining()) {
+                channel.write(payload);
+            }
+        }
+        return reference;
+    }
+
+    @Override
+    public ReadableByteChannel open(String reference) throws IOException {
+        return FileChannel.open(resolve(reference), StandardOpenOption.READ);
+    }
+
+    @Override
+    public void delete(String reference) throws IOException {
+        Files.deleteIfExists(resolve(reference));
+    }
+
+    /**
+     * Maps a reference to a file inside the store, refusing references that escape the directory.
+     */
+    private Path resolve(String reference) {
+        Path path = directory.resolve(reference).normalize();
+        if (!path.getParent().equals(directory)) {
+            throw new IllegalArgumentException("Invalid claim-check reference: " + reference);
+        }
+        return path;
+    }
+}
@@ -2,26 +2,55 @@ package com.function.config;
 
 import com.azure.identity.ClientSecretCredentialBuilder;
 import com.azure.identity.DefaultAzureCredentialBuilder;
+import com.azure.core.amqp.AmqpRetryOptions;
 import com.azure.core.credential.TokenCredential;
 import com.azure.messaging.eventhubs.EventHubClientBuilder;
 import com.azure.messaging.eventhubs.EventHubProducerAsyncClient;
 import com.azure.messaging.eventhubs.EventHubProducerClient;
-import io.cloudevents.kafka.CloudEventSerializer;
+import com.function.claimcheck.ClaimCheckProcessor;
+import com.function.claimcheck.FileSystemClaimCheckStore;
+import com.function.pipeline.CloudEventTransformer;
+import com.function.pipeline.DeadLetterHandler;
+import com.function.pipeline.TransformPipeline;
+import com.function.service.AsyncEventHubPublisherService;
+import com.function.service.EventHubPublisherService;
+import com.function.service.HedgingOptions;
+import com.function.service.MultiNamespacePublisherService;
+import com.function.service.NamespaceRoute;
+import com.function.service.PartitionSelector;
+import com.function.util.DuplicateEventFilter;
+import com.function.util.EnvelopeTemplateEventFormat;
+import com.function.util.PublishDeadlines;
+import com.function.util.ThroughputLimiter;
+import io.cloudevents.core.format.EventFormat;
+import io.cloudevents.core.provider.EventFormatProvider;
+import io.cloudevents.jackson.JsonFormat;
 import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Configuration class for setting up Azure Event Hub producer clients
  * and shared dependencies such as credential resolution and serialization.
  */
 @Configuration
 @AllArgsConstructor
-public class EventHubClientConfig {
+public class EventHubClientConfig implements DisposableBean {
 
     // Injects EventHub configuration properties defined in application.yml
     private final EventHubProperties properties;
 
+    // Producers of the additional namespaces; they are not beans themselves, so they are closed on shutdown here
+    private final List<EventHubProducerAsyncClient> namespaceClients = new ArrayList<>();
+
     /**
      * Determines which Azure credential to use based on the configuration.
      * If useManagedIdentity is true, DefaultAzureCredential will be used (for MSI).
@@ -48,11 +77,7 @@ public class EventHubClientConfig {
      */
     @Bean
     public EventHubProducerClient eventHubProducerClient(TokenCredential tokenCredential) {
-        return new EventHubClientBuilder()
-            .fullyQualifiedNamespace(properties.getNamespace())
-            .eventHubName(properties.getEventHubName())
-            .credential(tokenCredential)
-            .buildProducerClient();
+        return clientBuilder(tokenCredential).buildProducerClient();
     }
 
     /**
@@ -63,21 +88,244 @@ public class EventHubClientConfig {
      */
     @Bean
     public EventHubProducerAsyncClient eventHubProducerAsyncClient(TokenCredential tokenCredential) {
-        return new EventHubClientBuilder()
-            .fullyQualifiedNamespace(properties.getNamespace())
-            .eventHubName(properties.getEventHubName())
-            .credential(tokenCredential)
-            .buildAsyncProducerClient();
+        return clientBuilder(tokenCredential).buildAsyncProducerClient();
+    }
+
+    /**
+     * Creates an EventHubClientBuilder for the configured namespace and hub.
+     * When an attempt timeout is configured it becomes the client's try-timeout and the client's own
+     * retries are turned off, so a stuck send fails after one attempt timeout and RetryUtils decides
+     * whether to try again.
+     *
+     * @param tokenCredential the credential used to authenticate the client
+     * @return EventHubClientBuilder ready to build a producer
+     */
+    private EventHubClientBuilder clientBuilder(TokenCredential tokenCredential) {
+        return clientBuilder(tokenCredential, properties.getNamespace(), properties.getEventHubName());
+    }
+
+    /**
+     * Creates an EventHubClientBuilder for the given namespace and hub, with the same retry
+     * configuration as the primary clients.
+     *
+     * @param tokenCredential the credential used to authenticate the client
+     * @param namespace       the fully qualified namespace
+     * @param eventHubName    the Event Hub within the namespace
+     * @return EventHubClientBuilder ready to build a producer
+     */
+    private EventHubClientBuilder clientBuilder(TokenCredential tokenCredential, String namespace, String eventHubName) {
+        EventHubClientBuilder builder = new EventHubClientBuilder()
+            .fullyQualifiedNamespace(namespace)
+            .eventHubName(eventHubName)
+            .credential(tokenCredential);
+        if (publishDeadlines().hasAttemptTimeout()) {
+            builder.retryOptions(new AmqpRetryOptions()
+                .setTryTimeout(properties.getAttemptTimeout())
+                .setMaxRetries(0));
+        }
+        return builder;
+    }
+
+    /**
+     * Provides the per-attempt and overall time limits applied by the publishers.
+     *
+     * @return PublishDeadlines built from the configured timeouts
+     */
+    @Bean
+    public PublishDeadlines publishDeadlines() {
+        return new PublishDeadlines(properties.getAttemptTimeout(), properties.getPublishTimeout());
     }
 
     /**
-     * Provides a reusable CloudEventSerializer for serializing CloudEvents before publishing.
-     * This serializer is used by both sync and async publishers.
+     * Provides the hedging settings used by the async publisher for events without a partition key.
      *
-     * @return CloudEventSerializer instance
+     * @return HedgingOptions built from configuration
      */
     @Bean
-    public CloudEventSerializer cloudEventSerializer() {
-        return new CloudEventSerializer();
+    public HedgingOptions hedgingOptions() {
+        return HedgingOptions.builder()
+            .enabled(properties.isHedgingEnabled())
+            .percentile(properties.getHedgingPercentile())
+            .minDelay(properties.getHedgingMinDelay())
+            .build();
+    }
+
+    /**
+     * Creates the selector that steers events without a partition key to healthy partitions.
+     * Partition ids are read from the hub's properties through the async producer and refreshed periodically.
+     *
+     * @param producerAsyncClient the producer used to query the hub's partition ids
+     * @return PartitionSelector, disabled unless partition selection is enabled
+     */
+    @Bean
+    public PartitionSelector partitionSelector(EventHubProducerAsyncClient producerAsyncClient) {
+        return createPartitionSelector(producerAsyncClient);
+    }
+
+    /**
+     * Creates a partition selector bound to the given producer's hub.
+     * Kept separate from the bean method because each namespace needs its own selector instance.
+     *
+     * @param producerAsyncClient the producer used to query the hub's partition ids
+     * @return PartitionSelector, disabled unless partition selection is enabled
+     */
+    private PartitionSelector createPartitionSelector(EventHubProducerAsyncClient producerAsyncClient) {
+        if (!properties.isPartitionSelectionEnabled()) {
+            return PartitionSelector.disabled();
+        }
+        return PartitionSelector.forClient(
+            producerAsyncClient,
+            properties.getPartitionRefreshInterval(),
+            properties.getPartitionProbeRatio());
+    }
+
+    /**
+     * Creates the client-side throughput limiter shared by all publishers.
+     * Premium processing units take precedence over Standard throughput units;
+     * when neither is configured, publishing is not limited on the client.
+     *
+     * @return ThroughputLimiter sized to the namespace's ingress capacity
+     */
+    @Bean
+    public ThroughputLimiter throughputLimiter() {
+        return createThroughputLimiter(properties.getProcessingUnits(), properties.getThroughputUnits());
+    }
+
+    /**
+     * Creates a throughput limiter sized to a namespace's capacity.
+     * Premium processing units take precedence over Standard throughput units.
+     *
+     * @param processingUnits the namespace's processing units, or 0 if not Premium
+     * @param throughputUnits the namespace's throughput units, or 0 if not Standard
+     * @return ThroughputLimiter, unlimited when neither is configured
+     */
+    private ThroughputLimiter createThroughputLimiter(int processingUnits, int throughputUnits) {
+        if (processingUnits > 0) {
+            return ThroughputLimiter.forProcessingUnits(processingUnits, properties.getThrottleMode());
+        }
+        if (throughputUnits > 0) {
+            return ThroughputLimiter.forThroughputUnits(throughputUnits, properties.getThrottleMode());
+        }
+        return ThroughputLimiter.unlimited();
+    }
+
+    /**
+     * Creates the claim-check processor used to offload oversized payloads before publishing.
+     * The local filesystem store is used here; other ClaimCheckStore implementations can be
+     * plugged in by overriding this bean.
+     *
+     * @return ClaimCheckProcessor, disabled when no threshold is configured
+     * @throws IOException if the claim-check directory cannot be created
+     */
+    @Bean
+    public ClaimCheckProcessor claimCheckProcessor() throws IOException {
+        if (properties.getClaimCheckThresholdBytes() <= 0) {
+            return ClaimCheckProcessor.disabled();
+        }
+        return new ClaimCheckProcessor(
+            new FileSystemClaimCheckStore(Path.of(properties.getClaimCheckDirectory())),
+            properties.getClaimCheckThresholdBytes());
+    }
+
+    /**
+     * Creates the active-active publisher when additional namespaces are configured.
+     * Every namespace gets its own async producer and publisher, including its own throughput limiter
+     * and partition selector, while claim-check, deadlines and hedging settings are shared.
+     * The producers are closed together with this configuration on shutdown.
+     *
+     * @param tokenCredential     the credential used to authenticate the clients
+     * @param cloudEventFormat    the structured-mode format shared by all publishers
+     * @param claimCheckProcessor the claim-check stage shared by all publishers
+     * @return MultiNamespacePublisherService routing across the configured namespaces
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "eventhub", name = "namespaces[0].namespace")
+    public MultiNamespacePublisherService multiNamespacePublisherService(
+        TokenCredential tokenCredential,
+        EventFormat cloudEventFormat,
+        ClaimCheckProcessor claimCheckProcessor
+    ) {
+        List<NamespaceRoute> routes = new ArrayList<>();
+        for (EventHubProperties.NamespaceProperties namespace : properties.getNamespaces()) {
+            if (namespace.getWeight() <= 0) {
+                throw new IllegalArgumentException("Namespace " + namespace.getNamespace() + " must have a positive weight");
+            }
+            String eventHubName = namespace.getEventHubName() != null ? namespace.getEventHubName() : properties.getEventHubName();
+            EventHubProducerAsyncClient client = clientBuilder(tokenCredential, namespace.getNamespace(), eventHubName)
+                .buildAsyncProducerClient();
+            namespaceClients.add(client);
+
+            AsyncEventHubPublisherService publisher = new AsyncEventHubPublisherService(
+                client,
+                cloudEventFormat,
+                createThroughputLimiter(namespace.getProcessingUnits(), namespace.getThroughputUnits()),
+                claimCheckProcessor,
+                publishDeadlines(),
+                hedgingOptions(),
+                createPartitionSelector(client));
+            routes.add(new NamespaceRoute(namespace.getNamespace(), namespace.getWeight(), publisher));
+        }
+        return new MultiNamespacePublisherService(List.copyOf(routes));
+    }
+
+    /**
+     * Creates the consume-transform-republish pipeline behind the Event Hub triggered function.
+     * The transformer chain is made of every CloudEventTransformer bean, in @Order order,
+     * and the output batch is published through the streaming API of the multi-namespace publisher
+     * when additional namespaces are configured, otherwise of the async publisher.
+     * Copies of one event, such as those of hedged sends, are consumed only once.
+     * Events that cannot be processed go to the DeadLetterHandler bean, or are logged if there is none.
+     *
+     * @param asyncPublisher          the async publisher of the primary namespace
+     * @param multiNamespacePublisher the active-active publisher, if additional namespaces are configured
+     * @param transformers            the transformer beans forming the chain
+     * @param claimCheckProcessor     restores offloaded payloads of received events
+     * @param deadLetterHandler       the optional handler of events that cannot be processed
+     * @return TransformPipeline with the configured parallelism
+     */
+    @Bean
+    public TransformPipeline transformPipeline(
+        AsyncEventHubPublisherService asyncPublisher,
+        ObjectProvider<MultiNamespacePublisherService> multiNamespacePublisher,
+        ObjectProvider<CloudEventTransformer> transformers,
+        ClaimCheckProcessor claimCheckProcessor,
+        ObjectProvider<DeadLetterHandler> deadLetterHandler
+    ) {
+        EventHubPublisherService publisher = multiNamespacePublisher.getIfAvailable(() -> asyncPublisher);
+        return new TransformPipeline(
+            publisher,
+            transformers.orderedStream().toList(),
+            claimCheckProcessor,
+            new DuplicateEventFilter(properties.getPipelineDedupCapacity()),
+            deadLetterHandler.getIfAvailable(DeadLetterHandler::logging),
+            Math.max(1, properties.getPipelineParallelism()));
+    }
+
+    /**
+     * Provides the structured-mode format used by the publishers to encode CloudEvents.
+     * With envelope caching enabled, the constant attributes of each (type, source) template
+     * are encoded once and reused; otherwise every envelope is encoded in full by JsonFormat.
+     *
+     * @return EventFormat for structured-mode JSON
+     */
+    @Bean
+    public EventFormat cloudEventFormat() {
+        if (properties.getEnvelopeCacheSize() > 0) {
+            return new EnvelopeTemplateEventFormat(properties.getEnvelopeCacheSize());
+        }
+        EventFormat eventFormat = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
+        if (eventFormat == null) {
+            throw new RuntimeException("Event format '" + JsonFormat.CONTENT_TYPE + "' is not supported");
+        }
+        return eventFormat;
+    }
+
+    /**
+     * Closes the producers of the additional namespaces.
+     */
+    @Override
+    public void destroy() {
+        namespaceClients.forEach(EventHubProducerAsyncClient::close);
+        namespaceClients.clear();
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,10 @@
 package com.function.config;
 
+import com.function.util.ThroughputLimiter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -20,4 +25,51 @@ public class EventHubProperties {
     private String clientId;
     private String clientSecret;
     private String tenantId;
+
+    // Namespace capacity used to size the client-side throughput limiter (0 = not limited)
+    private int throughputUnits;
+    private int processingUnits;
+    private ThroughputLimiter.Mode throttleMode = ThroughputLimiter.Mode.WAIT;
+
+    // Payloads larger than this are offloaded to the claim-check store (0 = never offload)
+    private long claimCheckThresholdBytes;
+    private String claimCheckDirectory;
+
+    // Time limits of a single send attempt and of a whole publish (unset = no limit)
+    private Duration attemptTimeout;
+    private Duration publishTimeout;
+
+    // Hedged sends for events without a partition key
+    private boolean hedgingEnabled;
+    private double hedgingPercentile = 0.95;
+    private Duration hedgingMinDelay = Duration.ofMillis(20);
+
+    // Health-aware partition selection for events without a partition key
+    private boolean partitionSelectionEnabled;
+    private Duration partitionRefreshInterval = Duration.ofMinutes(5);
+    private double partitionProbeRatio = 0.05;
+
+    // Additional namespaces for active-active publishing; when set, traffic is shared between them by weight
+    private List<NamespaceProperties> namespaces = new ArrayList<>();
+
+    // Number of events of a received batch transformed at the same time by the republish pipeline
+    private int pipelineParallelism = Runtime.getRuntime().availableProcessors();
+    // Number of recently consumed event ids the pipeline remembers to drop duplicates, such as hedged copies
+    private int pipelineDedupCapacity = 100_000;
+
+    // Number of (type, source) envelope templates whose encoded prefix is cached (0 = encode every envelope in full)
+    private int envelopeCacheSize;
+
+    @Getter
+    @Setter
+    public static class NamespaceProperties {
+
+        private String namespace;
+        // Defaults to the top-level eventHubName
+        private String eventHubName;
+        private double weight = 1.0;
+        // Size this namespace's own throughput limiter; processing units take precedence (0 = not limited)
+        private int throughputUnits;
+        private int processingUnits;
+    }
 }
\ No newline at end of file
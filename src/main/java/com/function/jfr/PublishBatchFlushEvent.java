@@ -0,0 +1,43 @@
+package com.function.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Time spent flushing one batch of the streaming publisher, from admission through the final send attempt.
+ */
+@Name("com.function.PublishBatchFlush")
+@Label("Publish Batch Flush")
+@Description("Admission, send and retries of one batch of the streaming publisher")
+public class PublishBatchFlushEvent extends PublishStageEvent {
+
+    private static final EventType TYPE = EventType.getEventType(PublishBatchFlushEvent.class);
+    private static final PublishBatchFlushEvent INERT = inert(new PublishBatchFlushEvent());
+
+    @Label("Event Count")
+    int eventCount;
+
+    /**
+     * @return A started event, or a shared inert instance if no running recording has this event enabled.
+     */
+    public static PublishBatchFlushEvent start() {
+        return start(TYPE, INERT, PublishBatchFlushEvent::new);
+    }
+
+    /**
+     * Ends the stage and commits the event if a recording is interested in it.
+     *
+     * @param eventId    The id of the first CloudEvent in the batch.
+     * @param eventCount The number of events in the batch.
+     * @param bytes      The total serialized size of the batch.
+     * @param outcome    One of SUCCESS, FAILURE or REJECTED.
+     */
+    public void complete(String eventId, int eventCount, long bytes, String outcome) {
+        if (!inert) {
+            this.eventCount = eventCount;
+        }
+        complete(eventId, null, bytes, outcome);
+    }
+}
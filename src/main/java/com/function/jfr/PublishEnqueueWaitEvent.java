@@ -0,0 +1,25 @@
+package com.function.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Time spent waiting for client-side throughput capacity before a send.
+ */
+@Name("com.function.PublishEnqueueWait")
+@Label("Publish Enqueue Wait")
+@Description("Wait for client-side throughput capacity")
+public class PublishEnqueueWaitEvent extends PublishStageEvent {
+
+    private static final EventType TYPE = EventType.getEventType(PublishEnqueueWaitEvent.class);
+    private static final PublishEnqueueWaitEvent INERT = inert(new PublishEnqueueWaitEvent());
+
+    /**
+     * @return A started event, or a shared inert instance if no running recording has this event enabled.
+     */
+    public static PublishEnqueueWaitEvent start() {
+        return start(TYPE, INERT, PublishEnqueueWaitEvent::new);
+    }
+}
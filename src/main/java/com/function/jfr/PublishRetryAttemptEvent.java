@@ -0,0 +1,42 @@
+package com.function.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One attempt of an operation run through RetryUtils.
+ */
+@Name("com.function.PublishRetryAttempt")
+@Label("Publish Retry Attempt")
+@Description("One attempt of an operation run through RetryUtils")
+public class PublishRetryAttemptEvent extends PublishStageEvent {
+
+    private static final EventType TYPE = EventType.getEventType(PublishRetryAttemptEvent.class);
+    private static final PublishRetryAttemptEvent INERT = inert(new PublishRetryAttemptEvent());
+
+    @Label("Attempt")
+    int attempt;
+
+    /**
+     * @return A started event, or a shared inert instance if no running recording has this event enabled.
+     */
+    public static PublishRetryAttemptEvent start() {
+        return start(TYPE, INERT, PublishRetryAttemptEvent::new);
+    }
+
+    /**
+     * Ends the attempt and commits the event if a recording is interested in it.
+     *
+     * @param eventId The id of the CloudEvent being retried, or null if unknown.
+     * @param attempt The 1-based attempt number.
+     * @param outcome One of SUCCESS or FAILURE.
+     */
+    public void complete(String eventId, int attempt, String outcome) {
+        if (!inert) {
+            this.attempt = attempt;
+        }
+        complete(eventId, null, 0, outcome);
+    }
+}
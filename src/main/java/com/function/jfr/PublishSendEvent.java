@@ -0,0 +1,25 @@
+package com.function.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A single AMQP send attempt to Event Hubs.
+ */
+@Name("com.function.PublishSend")
+@Label("Publish Send")
+@Description("Single AMQP send attempt")
+public class PublishSendEvent extends PublishStageEvent {
+
+    private static final EventType TYPE = EventType.getEventType(PublishSendEvent.class);
+    private static final PublishSendEvent INERT = inert(new PublishSendEvent());
+
+    /**
+     * @return A started event, or a shared inert instance if no running recording has this event enabled.
+     */
+    public static PublishSendEvent start() {
+        return start(TYPE, INERT, PublishSendEvent::new);
+    }
+}
@@ -0,0 +1,25 @@
+package com.function.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Time spent offloading and serializing a CloudEvent.
+ */
+@Name("com.function.PublishSerialize")
+@Label("Publish Serialize")
+@Description("Claim-check offload and serialization of a CloudEvent")
+public class PublishSerializeEvent extends PublishStageEvent {
+
+    private static final EventType TYPE = EventType.getEventType(PublishSerializeEvent.class);
+    private static final PublishSerializeEvent INERT = inert(new PublishSerializeEvent());
+
+    /**
+     * @return A started event, or a shared inert instance if no running recording has this event enabled.
+     */
+    public static PublishSerializeEvent start() {
+        return start(TYPE, INERT, PublishSerializeEvent::new);
+    }
+}
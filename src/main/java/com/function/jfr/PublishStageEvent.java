@@ -0,0 +1,90 @@
+package com.function.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+import java.util.function.Supplier;
+
+/**
+ * Base class of the Java Flight Recorder events emitted for each stage of a publish.
+ * Each subclass has a static start() that begins a new event and returns it; complete(...) ends it.
+ * Stage events are captured by Reactor and CompletableFuture callbacks, so they escape and escape
+ * analysis cannot remove their allocation. start() therefore checks whether any running recording
+ * has the event type enabled, and if none does it returns a shared inert instance instead of
+ * allocating, which ignores complete(...) and is never committed.
+ */
+@Category({"Event Hub", "Publish"})
+@StackTrace(false)
+public abstract class PublishStageEvent extends Event {
+
+    public static final String SUCCESS = "SUCCESS";
+    public static final String FAILURE = "FAILURE";
+    public static final String REJECTED = "REJECTED";
+
+    @Label("Event Id")
+    String eventId;
+
+    @Label("Partition")
+    String partition;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Outcome")
+    String outcome;
+
+    // Set only on the shared instance returned while the event type is disabled; transient, so not recorded
+    transient boolean inert;
+
+    /**
+     * Begins a new event, or returns the shared inert instance if no running recording has the type enabled.
+     *
+     * @param type  The event type, looked up once per subclass.
+     * @param inert The shared inert instance of the subclass.
+     * @param event Creates a new instance of the subclass.
+     * @return The started event or the inert instance.
+     */
+    static <T extends PublishStageEvent> T start(EventType type, T inert, Supplier<T> event) {
+        if (!type.isEnabled()) {
+            return inert;
+        }
+        T started = event.get();
+        started.begin();
+        return started;
+    }
+
+    /**
+     * Marks an instance as the shared inert instance of its subclass.
+     */
+    static <T extends PublishStageEvent> T inert(T event) {
+        event.inert = true;
+        return event;
+    }
+
+    /**
+     * Ends the stage and commits the event if a recording is interested in it.
+     *
+     * @param eventId   The CloudEvent id (the first id for batch stages), or null if unknown.
+     * @param partition The target partition, or null if the SDK chooses it.
+     * @param bytes     The number of serialized bytes handled by the stage.
+     * @param outcome   One of SUCCESS, FAILURE or REJECTED.
+     */
+    public void complete(String eventId, String partition, long bytes, String outcome) {
+        if (inert) {
+            return;
+        }
+        end();
+        if (shouldCommit()) {
+            this.eventId = eventId;
+            this.partition = partition;
+            this.bytes = bytes;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.function.pipeline;
+
+import io.cloudevents.CloudEvent;
+
+/**
+ * One step of the consume-transform-republish pipeline, such as enriching, reshaping or filtering an event.
+ * Transformers run concurrently across the events of a batch, so implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface CloudEventTransformer {
+
+    /**
+     * Transforms a single CloudEvent.
+     *
+     * @param event The event produced by the previous step of the chain.
+     * @return The transformed event, or null to drop the event from the output batch.
+     */
+    CloudEvent transform(CloudEvent event);
+}
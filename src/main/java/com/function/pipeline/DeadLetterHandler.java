@@ -0,0 +1,31 @@
+package com.function.pipeline;
+
+import com.microsoft.azure.functions.ExecutionContext;
+
+/**
+ * Receives the messages that the consume-transform-republish pipeline gives up on, such as events that
+ * cannot be decoded, whose offloaded payload is missing, or that a transformer fails on. Retrying such a
+ * message can never succeed, so it is handed here instead of failing the batch and holding up its partition.
+ * Implementations may forward the message to a dead-letter hub or store; the default only logs it.
+ */
+@FunctionalInterface
+public interface DeadLetterHandler {
+
+    /**
+     * Takes over a message the pipeline will not republish.
+     *
+     * @param message The message as received by the trigger.
+     * @param cause   Why the message could not be processed.
+     * @param context The execution context for logging.
+     * @throws RuntimeException If the message cannot be dead-lettered; the batch then fails and is retried.
+     */
+    void deadLetter(String message, RuntimeException cause, ExecutionContext context);
+
+    /**
+     * @return A handler that logs each message together with the reason it was dropped.
+     */
+    static DeadLetterHandler logging() {
+        return (message, cause, context) -> context.getLogger().severe(
+            "Dropping message that cannot be processed (" + cause + "): " + message);
+    }
+}
@@ -0,0 +1,225 @@
+package com.function.pipeline;
+
+import com.function.claimcheck.ClaimCheckData;
+import com.function.claimcheck.ClaimCheckProcessor;
+import com.function.service.EventHubPublisherService;
+import com.function.service.PublishResult;
+import com.function.util.DuplicateEventFilter;
+import com.microsoft.azure.functions.ExecutionContext;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.format.EventFormat;
+import io.cloudevents.core.provider.EventFormatProvider;
+import io.cloudevents.jackson.JsonFormat;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Consume-transform-republish pipeline for one batch of events received from Event Hubs.
+ * Every event is decoded, dropped if another copy of it was already consumed, has an offloaded payload
+ * restored, and runs through the transformer chain; events are transformed in parallel but keep their input order. The results are republished together
+ * through the streaming publisher, so a batch costs one send rather than one per event.
+ *
+ * Copies of one event are recognised by their CloudEvent source and id. Hedged sends deliver such copies, and they
+ * usually arrive on different partitions, so the filter is shared by all invocations. The filter is held in memory,
+ * so it only catches copies consumed by the same host instance; with scale-out, the partitions of the two copies
+ * are often owned by different instances and both copies are republished. The keys of a batch that fails are
+ * forgotten again, so the redelivered batch is not mistaken for duplicates.
+ *
+ * Only a failed publish fails the batch, since retrying can fix it. A message that cannot be decoded, whose
+ * offloaded payload cannot be read, or that a transformer fails on would fail every retry alike, so it is
+ * handed to the DeadLetterHandler and the rest of the batch goes on.
+ *
+ * process only returns once every output event has been acknowledged and throws otherwise. The Functions host
+ * checkpoints the input batch either way, so it is the caller's retry of a failed batch that keeps its events
+ * from being skipped.
+ */
+public class TransformPipeline {
+
+    private final EventHubPublisherService publisher;
+    private final List<CloudEventTransformer> transformers;
+    private final ClaimCheckProcessor claimCheckProcessor;
+    private final DuplicateEventFilter duplicateFilter;
+    private final DeadLetterHandler deadLetterHandler;
+    private final int parallelism;
+    private final EventFormat eventFormat;
+
+    /**
+     * Creates a pipeline that logs the messages it cannot process.
+     *
+     * @param publisher           The publisher of the output batch; it must support streaming publish.
+     * @param transformers        The transformer chain, applied in list order.
+     * @param claimCheckProcessor Restores payloads that the producer offloaded.
+     * @param duplicateFilter     Remembers the ids of consumed events, to drop further copies of them.
+     * @param parallelism         The maximum number of events transformed at the same time.
+     */
+    public TransformPipeline(
+        EventHubPublisherService publisher,
+        List<CloudEventTransformer> transformers,
+        ClaimCheckProcessor claimCheckProcessor,
+        DuplicateEventFilter duplicateFilter,
+        int parallelism
+    ) {
+        this(publisher, transformers, claimCheckProcessor, duplicateFilter, DeadLetterHandler.logging(), parallelism);
+    }
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param publisher           The publisher of the output batch; it must support streaming publish.
+     * @param transformers        The transformer chain, applied in list order.
+     * @param claimCheckProcessor Restores payloads that the producer offloaded.
+     * @param duplicateFilter     Remembers the ids of consumed events, to drop further copies of them.
+     * @param deadLetterHandler   Takes over the messages that cannot be processed.
+     * @param parallelism         The maximum number of events transformed at the same time.
+     */
+    public TransformPipeline(
+        EventHubPublisherService publisher,
+        List<CloudEventTransformer> transformers,
+        ClaimCheckProcessor claimCheckProcessor,
+        DuplicateEventFilter duplicateFilter,
+        DeadLetterHandler deadLetterHandler,
+        int parallelism
+    ) {
+        this.publisher = publisher;
+        this.transformers = List.copyOf(transformers);
+        this.claimCheckProcessor = claimCheckProcessor;
+        this.duplicateFilter = duplicateFilter;
+        this.deadLetterHandler = deadLetterHandler;
+        this.parallelism = parallelism;
+        // Events on the wire are structured-mode JSON CloudEvents
+        this.eventFormat = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
+    }
+
+    /**
+     * Transforms a batch of received events and republishes the results as one batch.
+     *
+     * @param messages The structured-mode CloudEvents received by the trigger, in partition order.
+     * @param context  The execution context for logging.
+     * @return The number of events republished.
+     * @throws RuntimeException If the output batch is not acknowledged, or a message cannot be dead-lettered.
+     */
+    public int process(List<String> messages, ExecutionContext context) {
+        if (messages.isEmpty()) {
+            return 0;
+        }
+
+        // Events let through by this batch; forgotten again if the batch fails and is redelivered
+        Queue<String> consumedKeys = new ConcurrentLinkedQueue<>();
+        try {
+            return republish(messages, consumedKeys, context);
+        } catch (RuntimeException e) {
+            consumedKeys.forEach(duplicateFilter::forget);
+            throw e;
+        }
+    }
+
+    /**
+     * Transforms the batch in parallel and publishes the results, failing unless all are acknowledged.
+     */
+    private int republish(List<String> messages, Queue<String> consumedKeys, ExecutionContext context) {
+        AtomicInteger deadLettered = new AtomicInteger();
+        List<CloudEvent> transformed = Flux.fromIterable(messages)
+            // Transform concurrently while emitting results in input order. Reading offloaded payloads
+            // and enrichment transformers block, so run on boundedElastic rather than the CPU-bound parallel pool
+            .flatMapSequential(message -> Mono.fromCallable(() -> transform(message, consumedKeys, deadLettered, context))
+                .subscribeOn(Schedulers.boundedElastic()), parallelism)
+            .collectList()
+            .block();
+        if (deadLettered.get() > 0) {
+            context.getLogger().warning("Dead-lettered " + deadLettered.get() + " of " + messages.size() + " events");
+        }
+        if (transformed.isEmpty()) {
+            context.getLogger().info("All " + messages.size() + " events were dropped as duplicates, by the transformers or as dead letters");
+            return 0;
+        }
+
+        List<PublishResult> results = publisher.publish(Flux.fromIterable(transformed), context)
+            .collectList()
+            .block();
+
+        long failed = results.stream()
+            .filter(result -> !result.isSuccess())
+            .mapToLong(result -> result.getEventIds().size())
+            .sum();
+        if (failed > 0) {
+            Throwable cause = results.stream()
+                .filter(result -> !result.isSuccess())
+                .findFirst()
+                .map(PublishResult::getError)
+                .orElse(null);
+            context.getLogger().severe("Failed to republish " + failed + " of " + transformed.size() + " events");
+            throw new RuntimeException("Failed to republish " + failed + " of " + transformed.size() + " events", cause);
+        }
+
+        context.getLogger().info("Republished " + transformed.size() + " of " + messages.size() + " events");
+        return transformed.size();
+    }
+
+    /**
+     * Decodes one message, drops it if it is a copy of an event already consumed,
+     * and runs it through the transformer chain. A message that fails any of these steps is dead-lettered.
+     *
+     * @param message      The structured-mode CloudEvent.
+     * @param consumedKeys Collects the keys of events let through.
+     * @param deadLettered Counts the messages dead-lettered.
+     * @param context      The execution context for logging.
+     * @return The transformed event, or null if it is a duplicate, a transformer dropped it or it was dead-lettered.
+     */
+    private CloudEvent transform(String message, Queue<String> consumedKeys, AtomicInteger deadLettered, ExecutionContext context) {
+        CloudEvent event;
+        try {
+            event = eventFormat.deserialize(message.getBytes(StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            return deadLetter(message, e, deadLettered, context);
+        }
+        String key = DuplicateEventFilter.keyOf(event);
+        if (!duplicateFilter.firstSeen(key)) {
+            return null;
+        }
+        consumedKeys.add(key);
+
+        try {
+            event = claimCheckProcessor.resolve(event);
+            if (event.getData() instanceof ClaimCheckData data) {
+                // Read the offloaded payload now, so that a missing one is dead-lettered rather than failing the publish
+                data.toBytes();
+            }
+            for (CloudEventTransformer transformer : transformers) {
+                event = transformer.transform(event);
+                if (event == null) {
+                    return null;
+                }
+            }
+            return event;
+        } catch (RuntimeException e) {
+            return deadLetter(message, e, deadLettered, context);
+        }
+    }
+
+    /**
+     * Dead-letters a whole batch, for a caller that gives up on it after its last retry.
+     *
+     * @param messages The structured-mode CloudEvents of the batch.
+     * @param cause    Why the batch could not be republished.
+     * @param context  The execution context for logging.
+     */
+    public void deadLetter(List<String> messages, RuntimeException cause, ExecutionContext context) {
+        context.getLogger().severe("Dead-lettering batch of " + messages.size() + " events: " + cause.getMessage());
+        for (String message : messages) {
+            deadLetterHandler.deadLetter(message, cause, context);
+        }
+    }
+
+    private CloudEvent deadLetter(String message, RuntimeException cause, AtomicInteger deadLettered, ExecutionContext context) {
+        deadLetterHandler.deadLetter(message, cause, context);
+        deadLettered.incrementAndGet();
+        return null;
+    }
+}
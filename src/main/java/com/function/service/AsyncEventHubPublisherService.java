@@ -2,17 +2,37 @@ package com.function.service;
 
 import com.azure.messaging.eventhubs.EventData;
 import com.azure.messaging.eventhubs.EventHubProducerAsyncClient;
+import com.azure.messaging.eventhubs.models.SendOptions;
+import com.function.claimcheck.ClaimCheckProcessor;
+import com.function.jfr.PublishBatchFlushEvent;
+import com.function.jfr.PublishEnqueueWaitEvent;
+import com.function.jfr.PublishSendEvent;
+import com.function.jfr.PublishSerializeEvent;
+import com.function.jfr.PublishStageEvent;
+import com.function.util.LatencyTracker;
+import com.function.util.PublishDeadlines;
 import com.function.util.RetryUtils;
+import com.function.util.ThroughputLimitExceededException;
+import com.function.util.ThroughputLimiter;
 
 import io.cloudevents.CloudEvent;
-import io.cloudevents.kafka.CloudEventSerializer;
+import io.cloudevents.core.format.EventFormat;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import com.microsoft.azure.functions.ExecutionContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Asynchronous implementation of EventHubPublisherService.
@@ -24,10 +44,36 @@ import java.util.concurrent.CompletableFuture;
 @RequiredArgsConstructor
 public class AsyncEventHubPublisherService implements EventHubPublisherService {
 
+    // CloudEvents partitioning extension; events carrying it are sent with that partition key
+    public static final String PARTITION_KEY_EXTENSION = "partitionkey";
+
+    // How long the partition ids used for hedging without partition selection are reused
+    private static final Duration HEDGE_PARTITION_REFRESH = Duration.ofMinutes(5);
+
+    // Longest wait for ingress capacity when no overall publish timeout is configured
+    private static final Duration MAX_ADMISSION_WAIT = Duration.ofSeconds(30);
+
     // Azure Event Hub producer client for sending events asynchronously
     private final EventHubProducerAsyncClient producerAsyncClient;
-    private final CloudEventSerializer cloudEventSerializer;
-    private final String cloudEventTopic;
+    // Structured-mode format of the published envelope, e.g. JsonFormat or EnvelopeTemplateEventFormat
+    private final EventFormat eventFormat;
+    // Client-side limiter shared by all publishers to stay within the namespace's ingress quota
+    private final ThroughputLimiter throughputLimiter;
+    // Offloads payloads above the size threshold so the message itself stays small
+    private final ClaimCheckProcessor claimCheckProcessor;
+    // Per-attempt and overall time limits of a publish
+    private final PublishDeadlines deadlines;
+    // Hedged sends for events without a partition key
+    private final HedgingOptions hedgingOptions;
+    // Chooses healthy partitions for events and batches without a partition key
+    private final PartitionSelector partitionSelector;
+
+    // Recent single-event send latencies, used to decide when an attempt is slow enough to hedge
+    private final LatencyTracker sendLatencies = new LatencyTracker(256);
+    // Partition ids of the hub for hedging without partition selection; refreshed periodically, failures are not cached
+    private final Mono<List<String>> hedgePartitionIds = Mono.defer(() -> producerAsyncClient.getPartitionIds().collectList())
+        .cache(ids -> HEDGE_PARTITION_REFRESH, error -> Duration.ZERO, () -> Duration.ZERO);
+    private final AtomicInteger nextHedgePartition = new AtomicInteger();
 
     /**
      * Synchronous publishing is not supported in this service.
@@ -44,7 +90,9 @@ public class AsyncEventHubPublisherService implements EventHubPublisherService {
 
     /**
      * Publishes a CloudEvent to Azure Event Hubs asynchronously.
-     * This method uses retry logic to handle transient failures.
+     * The event is admitted through the throughput limiter once, without blocking the caller; a publish
+     * that would have to wait longer than the overall timeout for capacity is rejected instead. The send itself uses retry logic to handle transient failures, with every attempt
+     * and the retries as a whole bounded by the configured deadlines.
      *
      * @param event   The CloudEvent to be published.
      * @param context The execution context for logging.
@@ -52,23 +100,408 @@ public class AsyncEventHubPublisherService implements EventHubPublisherService {
      */
     @Override
     public CompletableFuture<Void> publishAsync(CloudEvent event, ExecutionContext context) {
-        return RetryUtils.retryAsync(() -> {
-            // Serialize the CloudEvent into a byte array
-            byte[] serialized = serializeEvent(event, context);
+        SerializedEvent serialized;
+        try {
+            // Move an oversized payload to the claim-check store, then serialize the (now small) envelope
+            serialized = serializeForPublish(event, context);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long waitNanos;
+        // Reserve ingress capacity; the send is delayed rather than a thread being parked
+        PublishEnqueueWaitEvent enqueueStage = PublishEnqueueWaitEvent.start();
+        try {
+            waitNanos = throughputLimiter.reserve(serialized.body().length, 1, maxAdmissionWaitNanos());
+        } catch (ThroughputLimitExceededException e) {
+            enqueueStage.complete(event.getId(), null, 0, PublishStageEvent.REJECTED);
+            // Nothing was sent, so the offloaded payload would never be read
+            claimCheckProcessor.discard(serialized.claimCheckReference());
+            return CompletableFuture.failedFuture(e);
+        }
 
-            // Wrap the serialized data into an EventData object
-            EventData eventData = new EventData(serialized);
+        // Wrap the serialized data into an EventData object
+        EventData eventData = new EventData(serialized.body());
+        long sizeInBytes = serialized.body().length;
 
+        // Delay the first attempt on a timer until the reserved capacity becomes available
+        Mono<Void> admission = (waitNanos > 0
+            ? Mono.delay(Duration.ofNanos(waitNanos)).then()
+            : Mono.<Void>empty())
+            .doOnTerminate(() -> enqueueStage.complete(event.getId(), null, sizeInBytes, PublishStageEvent.SUCCESS));
+
+        return admission.toFuture().thenCompose(ignored -> RetryUtils.retryAsync(() ->
             // Send the event data to Event Hubs asynchronously
-            return producerAsyncClient.send(Collections.singletonList(eventData))
+            send(eventData, event, sizeInBytes)
                 .doOnSuccess(aVoid -> context.getLogger().info("Async publish succeeded: " + event.getId()))
                 .doOnError(error -> context.getLogger().severe("Async publish failed: " + error.getMessage()))
-                .toFuture();
-        }, context);
+                .toFuture(), context, event.getId(), deadlines));
+    }
+
+    /**
+     * Sends a single event. Keyed events go to the partition of their key. Unkeyed events go to the
+     * partition chosen by the PartitionSelector, or to one chosen by the service while the selector is
+     * disabled or has not loaded the partition ids yet. With hedging enabled, if the attempt is slower
+     * than the configured latency percentile, a second copy is sent to another partition; the first copy
+     * to be acknowledged wins and the other is cancelled. Both copies carry the same CloudEvent id so
+     * consumers can drop the duplicate. Hedging does not depend on partition selection: without a selected
+     * partition, both copies go to partitions taken round-robin from the hub's partition ids.
+     *
+     * @param eventData The serialized event.
+     * @param event     The CloudEvent being published, for its id and partition key.
+     * @param bytes     The serialized size, for telemetry.
+     * @return A Mono that completes when one copy of the event has been acknowledged.
+     */
+    private Mono<Void> send(EventData eventData, CloudEvent event, long bytes) {
+        Object partitionKey = event.getExtension(PARTITION_KEY_EXTENSION);
+        if (partitionKey != null) {
+            return sendAttempt(eventData, new SendOptions().setPartitionKey(partitionKey.toString()), event.getId(), bytes, null);
+        }
+
+        String primary = partitionSelector.select();
+        if (!hedgingOptions.isEnabled() || sendLatencies.size() < hedgingOptions.getMinSamples()) {
+            return sendAttempt(eventData, toPartition(primary), event.getId(), bytes, primary);
+        }
+        if (primary != null) {
+            return hedgedSend(eventData, event.getId(), bytes, primary, partitionSelector.select(primary));
+        }
+
+        // Without a selected partition, hedge across partitions taken round-robin from the hub
+        return hedgePartitionIds
+            .onErrorResume(error -> {
+                log.warn("Failed to load partition ids for hedging: {}", error.getMessage());
+                return Mono.just(List.of());
+            })
+            .flatMap(ids -> {
+                if (ids.size() < 2) {
+                    return sendAttempt(eventData, null, event.getId(), bytes, null);
+                }
+                int index = Math.floorMod(nextHedgePartition.getAndIncrement(), ids.size());
+                return hedgedSend(eventData, event.getId(), bytes, ids.get(index), ids.get((index + 1) % ids.size()));
+            });
+    }
+
+    /**
+     * Sends an event to the primary partition and, if it has not been acknowledged within the hedge delay,
+     * a second copy to the secondary partition.
+     *
+     * @param eventData The serialized event.
+     * @param eventId   The CloudEvent id, for telemetry.
+     * @param bytes     The serialized size, for telemetry.
+     * @param primary   The partition of the first copy.
+     * @param secondary The partition of the hedged copy, or null to send without hedging.
+     * @return A Mono that completes when one copy of the event has been acknowledged.
+     */
+    private Mono<Void> hedgedSend(EventData eventData, String eventId, long bytes, String primary, String secondary) {
+        if (secondary == null) {
+            return sendAttempt(eventData, toPartition(primary), eventId, bytes, primary);
+        }
+
+        Duration observed = Duration.ofNanos(sendLatencies.percentile(hedgingOptions.getPercentile()));
+        Duration hedgeDelay = observed.compareTo(hedgingOptions.getMinDelay()) > 0 ? observed : hedgingOptions.getMinDelay();
+
+        Mono<String> primarySend = sendAttempt(eventData, toPartition(primary), eventId, bytes, primary)
+            .thenReturn(primary);
+        // Only started once the delay elapses; cancelled together with the delay if the primary wins first.
+        // The copy uses broker ingress too, so it is skipped unless the limiter has capacity for it right now
+        Mono<String> secondarySend = Mono.delay(hedgeDelay)
+            .flatMap(tick -> admitHedge(eventId, bytes)
+                ? sendAttempt(eventData, toPartition(secondary), eventId, bytes, secondary).thenReturn(secondary)
+                : Mono.<String>empty());
+
+        return Mono.firstWithValue(primarySend, secondarySend)
+            .doOnNext(winner -> {
+                if (winner.equals(secondary)) {
+                    log.debug("Hedged send of {} to partition {} won over partition {}", eventId, secondary, primary);
+                }
+            })
+            .then();
+    }
+
+    /**
+     * Reserves ingress capacity for a hedged copy if it is available without waiting.
+     *
+     * @param eventId The CloudEvent id, for logging.
+     * @param bytes   The serialized size of the copy.
+     * @return Whether the copy may be sent.
+     */
+    private boolean admitHedge(String eventId, long bytes) {
+        try {
+            throughputLimiter.reserve(bytes, 1, 0L);
+            return true;
+        } catch (ThroughputLimitExceededException e) {
+            log.debug("Skipping hedged send of {}: no ingress capacity to spare", eventId);
+            return false;
+        }
     }
 
     /**
-     * Serializes a CloudEvent into a byte array using CloudEventSerializer.
+     * @return The longest time a publish may wait for ingress capacity: the overall timeout if one is configured.
+     */
+    private long maxAdmissionWaitNanos() {
+        return (deadlines.hasOverallTimeout() ? deadlines.getOverallTimeout() : MAX_ADMISSION_WAIT).toNanos();
+    }
+
+    /**
+     * One send of a single event, recorded as a JFR send stage, as a latency sample on success and
+     * in the health of the target partition.
+     *
+     * @param eventData   The serialized event.
+     * @param sendOptions The partition id or key to send with, or null to let the service choose.
+     * @param eventId     The CloudEvent id, for telemetry.
+     * @param bytes       The serialized size, for telemetry.
+     * @param partition   The explicit partition id, or null.
+     * @return A Mono that completes when the send is acknowledged.
+     */
+    private Mono<Void> sendAttempt(EventData eventData, SendOptions sendOptions, String eventId, long bytes, String partition) {
+        return Mono.defer(() -> {
+            PublishSendEvent sendStage = PublishSendEvent.start();
+            long start = System.nanoTime();
+            Mono<Void> send = sendOptions == null
+                ? producerAsyncClient.send(Collections.singletonList(eventData))
+                : producerAsyncClient.send(Collections.singletonList(eventData), sendOptions);
+            return trackPartitionHealth(send, partition, start)
+                .doOnSuccess(aVoid -> {
+                    sendLatencies.record(System.nanoTime() - start);
+                    sendStage.complete(eventId, partition, bytes, PublishStageEvent.SUCCESS);
+                })
+                .doOnError(error -> sendStage.complete(eventId, partition, bytes, PublishStageEvent.FAILURE));
+        });
+    }
+
+    /**
+     * Feeds the outcome of a send into the health of its partition. An attempt that is abandoned
+     * (its hedge won, or it ran past its timeout) counts against the partition like a failure.
+     *
+     * @param send      The send to observe.
+     * @param partition The explicit partition id, or null if the service chose the partition.
+     * @param start     The System.nanoTime() at which the send started.
+     * @return The observed send.
+     */
+    private Mono<Void> trackPartitionHealth(Mono<Void> send, String partition, long start) {
+        if (partition == null) {
+            return send;
+        }
+        return send
+            .doOnSuccess(aVoid -> partitionSelector.recordSuccess(partition, System.nanoTime() - start))
+            .doOnError(error -> partitionSelector.recordFailure(partition))
+            .doOnCancel(() -> partitionSelector.recordFailure(partition));
+    }
+
+    /**
+     * @return SendOptions targeting the given partition, or null to let the service choose.
+     */
+    private static SendOptions toPartition(String partition) {
+        return partition == null ? null : new SendOptions().setPartitionId(partition);
+    }
+
+    /**
+     * Publishes a stream of CloudEvents using the default streaming options.
+     *
+     * @param events  The stream of CloudEvents to be published.
+     * @param context The execution context for logging.
+     * @return A stream with one PublishResult per batch sent.
+     */
+    @Override
+    public Flux<PublishResult> publish(Flux<CloudEvent> events, ExecutionContext context) {
+        return publish(events, StreamingPublishOptions.defaults(), context);
+    }
+
+    /**
+     * Publishes a stream of CloudEvents in batches with end-to-end backpressure.
+     * Events are grouped into batches bounded by count, size and time, and only a limited number of
+     * batch sends are outstanding at once; further events are requested from the source as sends complete,
+     * so a fast source runs at the speed of the broker instead of buffering without bound.
+     * Each batch is retried with Reactor's backoff operator, and a batch that still fails is
+     * reported as a failed PublishResult rather than terminating the stream.
+     *
+     * @param events  The stream of CloudEvents to be published.
+     * @param options Batching, concurrency and retry settings.
+     * @param context The execution context for logging.
+     * @return A stream with one PublishResult per batch sent, in completion order.
+     */
+    public Flux<PublishResult> publish(Flux<CloudEvent> events, StreamingPublishOptions options, ExecutionContext context) {
+        return events
+            // Offload and serialize each event as it arrives; a serialization failure terminates the stream
+            .map(event -> serializeForPublish(event, context))
+            // Close a batch on count or time; fair backpressure only requests what downstream can absorb
+            .bufferTimeout(options.getMaxBatchEvents(), options.getMaxBatchWait(), true)
+            // Group by partition key so keyed events keep their partition, then split batches that would exceed the size budget
+            .concatMapIterable(buffer -> splitByKeyAndSize(buffer, options.getMaxBatchBytes()))
+            // Bound the number of in-flight sends; this is where demand is propagated back to the source
+            .flatMap(batch -> sendBatch(batch, options, context), options.getMaxInFlightBatches(), 1);
+    }
+
+    /**
+     * Sends one batch, applying the throughput limiter once and retrying transient failures with backoff.
+     * A batch of keyed events, which all share one key, is sent with that partition key; an unkeyed batch
+     * goes to the partition chosen by the PartitionSelector.
+     *
+     * @param batch   The serialized events to be sent together.
+     * @param options Retry settings.
+     * @param context The execution context for logging.
+     * @return A Mono emitting the outcome of the batch; it never completes with an error.
+     */
+    private Mono<PublishResult> sendBatch(List<SerializedEvent> batch, StreamingPublishOptions options, ExecutionContext context) {
+        List<String> eventIds = batch.stream().map(SerializedEvent::id).toList();
+        List<EventData> eventData = batch.stream().map(serialized -> new EventData(serialized.body())).toList();
+        long sizeInBytes = batch.stream().mapToLong(serialized -> serialized.body().length).sum();
+        String firstEventId = eventIds.get(0);
+        // Every event of a batch has the same partition key, or none
+        String partitionKey = batch.get(0).partitionKey();
+
+        return Mono.defer(() -> {
+            PublishBatchFlushEvent flushStage = PublishBatchFlushEvent.start();
+
+            // Reserve ingress capacity for the whole batch and wait for it on a timer
+            Mono<Void> admission = Mono.defer(() -> {
+                PublishEnqueueWaitEvent enqueueStage = PublishEnqueueWaitEvent.start();
+                long waitNanos;
+                try {
+                    waitNanos = throughputLimiter.reserve(sizeInBytes, batch.size(), maxAdmissionWaitNanos());
+                } catch (ThroughputLimitExceededException e) {
+                    enqueueStage.complete(firstEventId, null, sizeInBytes, PublishStageEvent.REJECTED);
+                    return Mono.error(e);
+                }
+                return Mono.delay(Duration.ofNanos(waitNanos))
+                    .doOnTerminate(() -> enqueueStage.complete(firstEventId, null, sizeInBytes, PublishStageEvent.SUCCESS))
+                    .then();
+            });
+
+            // One send attempt; re-created for every retry so each attempt is recorded separately
+            Mono<Void> batchAttempt = Mono.defer(() -> {
+                PublishSendEvent sendStage = PublishSendEvent.start();
+                long start = System.nanoTime();
+                // Chosen per attempt, so a retry moves away from a partition that just failed
+                String partition = partitionKey != null ? null : partitionSelector.select();
+                Mono<Void> send;
+                if (partitionKey != null) {
+                    send = producerAsyncClient.send(eventData, new SendOptions().setPartitionKey(partitionKey));
+                } else if (partition != null) {
+                    send = producerAsyncClient.send(eventData, toPartition(partition));
+                } else {
+                    send = producerAsyncClient.send(eventData);
+                }
+                if (deadlines.hasAttemptTimeout()) {
+                    // Cancels the stuck send and fails the attempt so that it is retried
+                    send = send.timeout(deadlines.getAttemptTimeout());
+                }
+                return trackPartitionHealth(send, partition, start)
+                    .doOnSuccess(aVoid -> sendStage.complete(firstEventId, partition, sizeInBytes, PublishStageEvent.SUCCESS))
+                    .doOnError(error -> sendStage.complete(firstEventId, partition, sizeInBytes, PublishStageEvent.FAILURE));
+            });
+
+            Mono<Void> retriedSend = batchAttempt
+                .retryWhen(Retry.backoff(options.getMaxAttempts() - 1, options.getRetryBackoff())
+                    .doBeforeRetry(signal -> context.getLogger().warning(
+                        "Batch retry " + (signal.totalRetries() + 1) + " failed: " + signal.failure().getMessage()))
+                    .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+            if (deadlines.hasOverallTimeout()) {
+                retriedSend = retriedSend.timeout(deadlines.getOverallTimeout());
+            }
+
+            Mono<Void> timedSend = retriedSend;
+            return admission
+                .then(Mono.defer(() -> {
+                    // The latency reported with the result covers the sends and retries, not the admission wait
+                    long sendStart = System.nanoTime();
+                    return timedSend.then(Mono.fromSupplier(
+                        () -> PublishResult.success(eventIds, sizeInBytes, System.nanoTime() - sendStart)));
+                }))
+                .doOnSuccess(result -> {
+                    flushStage.complete(firstEventId, batch.size(), sizeInBytes, PublishStageEvent.SUCCESS);
+                    context.getLogger().info("Batch publish succeeded: " + eventIds.size() + " events");
+                })
+                .onErrorResume(error -> {
+                    flushStage.complete(firstEventId, batch.size(), sizeInBytes,
+                        error instanceof ThroughputLimitExceededException ? PublishStageEvent.REJECTED : PublishStageEvent.FAILURE);
+                    context.getLogger().severe("Batch publish failed after retries: " + error.getMessage());
+                    if (error instanceof ThroughputLimitExceededException) {
+                        // The batch was rejected before any send, so its offloaded payloads would never be read;
+                        // after a send attempt they are kept, since the broker may have accepted the batch
+                        batch.forEach(serialized -> claimCheckProcessor.discard(serialized.claimCheckReference()));
+                    }
+                    return Mono.just(PublishResult.failure(eventIds, sizeInBytes, error));
+                });
+        });
+    }
+
+    /**
+     * Groups a buffer of serialized events by partition key, keeping the order of the events of each key,
+     * and splits every group into batches within maxBatchBytes. Unkeyed events form a group of their own.
+     *
+     * @param buffer        The events collected by the batching window.
+     * @param maxBatchBytes The size budget of a single batch.
+     * @return The batches to be sent; each holds events of a single partition key, or only unkeyed events.
+     */
+    private static List<List<SerializedEvent>> splitByKeyAndSize(List<SerializedEvent> buffer, long maxBatchBytes) {
+        Map<String, List<SerializedEvent>> groups = new LinkedHashMap<>();
+        for (SerializedEvent serialized : buffer) {
+            groups.computeIfAbsent(serialized.partitionKey(), key -> new ArrayList<>()).add(serialized);
+        }
+        List<List<SerializedEvent>> batches = new ArrayList<>();
+        for (List<SerializedEvent> group : groups.values()) {
+            batches.addAll(splitBySize(group, maxBatchBytes));
+        }
+        return batches;
+    }
+
+    /**
+     * Splits a buffer of serialized events into consecutive batches whose total size stays within maxBatchBytes.
+     * A single event larger than the budget is still sent on its own and left for the broker to accept or reject.
+     *
+     * @param buffer        The events collected by the batching window.
+     * @param maxBatchBytes The size budget of a single batch.
+     * @return The batches to be sent, in order.
+     */
+    private static List<List<SerializedEvent>> splitBySize(List<SerializedEvent> buffer, long maxBatchBytes) {
+        List<List<SerializedEvent>> batches = new ArrayList<>();
+        List<SerializedEvent> current = new ArrayList<>();
+        long currentBytes = 0;
+        for (SerializedEvent serialized : buffer) {
+            if (!current.isEmpty() && currentBytes + serialized.body().length > maxBatchBytes) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            current.add(serialized);
+            currentBytes += serialized.body().length;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * Offloads an oversized payload to the claim-check store and serializes the resulting envelope,
+     * recording the stage as a JFR event. If serialization fails, the offloaded payload is discarded again.
+     *
+     * @param event   The CloudEvent to be published.
+     * @param context The execution context for logging.
+     * @return The serialized CloudEvent together with the claim-check reference it carries.
+     * @throws RuntimeException If offloading or serialization fails.
+     */
+    private SerializedEvent serializeForPublish(CloudEvent event, ExecutionContext context) {
+        PublishSerializeEvent serializeStage = PublishSerializeEvent.start();
+        String claimCheckReference = null;
+        try {
+            CloudEvent outgoing = claimCheckProcessor.offload(event);
+            claimCheckReference = ClaimCheckProcessor.referenceOf(outgoing);
+            byte[] serialized = serializeEvent(outgoing, context);
+            serializeStage.complete(event.getId(), null, serialized.length, PublishStageEvent.SUCCESS);
+            Object partitionKey = event.getExtension(PARTITION_KEY_EXTENSION);
+            return new SerializedEvent(
+                event.getId(), partitionKey == null ? null : partitionKey.toString(), serialized, claimCheckReference);
+        } catch (RuntimeException e) {
+            serializeStage.complete(event.getId(), null, 0, PublishStageEvent.FAILURE);
+            claimCheckProcessor.discard(claimCheckReference);
+            throw e;
+        }
+    }
+
+    /**
+     * Serializes a CloudEvent into a byte array using the configured structured-mode EventFormat.
      *
      * @param event   The CloudEvent to be serialized.
      * @param context The execution context for logging.
@@ -77,13 +510,18 @@ public class AsyncEventHubPublisherService implements EventHubPublisherService {
      */
     private byte[] serializeEvent(CloudEvent event, ExecutionContext context) {
         try {
-            // Use the injected CloudEventSerializer for serialization
-            return cloudEventSerializer.serialize(cloudEventTopic, event);
+            return eventFormat.serialize(event);
         } catch (Exception e) {
             // Log the serialization failure and throw a RuntimeException
             context.getLogger().severe("Failed to serialize CloudEvent: " + e.getMessage());
             throw new RuntimeException("Serialization failed", e);
         }
     }
-}
 
+    /**
+     * A serialized event together with the id needed to report its outcome, its partition key (null if it
+     * has none), and the claim-check reference to discard if it is never published.
+     */
+    private record SerializedEvent(String id, String partitionKey, byte[] body, String claimCheckReference) {
+    }
+}
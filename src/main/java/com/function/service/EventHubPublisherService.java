@@ -2,6 +2,7 @@ package com.function.service;
 
 import io.cloudevents.CloudEvent;
 import com.microsoft.azure.functions.ExecutionContext;
+import reactor.core.publisher.Flux;
 
 import java.util.concurrent.CompletableFuture;
 
@@ -13,6 +14,8 @@ public interface EventHubPublisherService {
     void publishSync(CloudEvent event, ExecutionContext context);
 
     CompletableFuture<Void> publishAsync(CloudEvent event, ExecutionContext context);
+
+    Flux<PublishResult> publish(Flux<CloudEvent> events, ExecutionContext context);
 }
 
 
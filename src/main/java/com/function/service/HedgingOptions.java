@@ -0,0 +1,34 @@
+package com.function.service;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Settings for hedged sends of events without a partition key.
+ * When an attempt has been outstanding longer than the given latency percentile of recent sends,
+ * a second copy is sent to a different partition and whichever completes first wins.
+ * Hedging only starts once minSamples latencies have been observed.
+ */
+@Value
+@Builder
+public class HedgingOptions {
+
+    @Builder.Default
+    boolean enabled = false;
+
+    @Builder.Default
+    double percentile = 0.95;
+
+    // Lower bound on the hedge delay so that a very fast p95 does not double the send rate
+    @Builder.Default
+    Duration minDelay = Duration.ofMillis(20);
+
+    @Builder.Default
+    int minSamples = 20;
+
+    public static HedgingOptions disabled() {
+        return HedgingOptions.builder().build();
+    }
+}
@@ -0,0 +1,251 @@
+package com.function.service;
+
+import com.microsoft.azure.functions.ExecutionContext;
+
+import io.cloudevents.CloudEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Active-active implementation of EventHubPublisherService that spreads events across several
+ * Event Hubs namespaces, each with its own publisher and producer.
+ * This raises the combined throughput beyond a single namespace's throughput units and removes
+ * the single namespace as a point of failure.
+ *
+ * Each event is routed by weighted random choice. A namespace's configured weight is scaled down
+ * as its recent error rate rises or its latency grows relative to the fastest namespace, so traffic
+ * moves away from a struggling namespace automatically. Every namespace keeps a small minimum share,
+ * which keeps its health measurements fresh and lets traffic move back once it recovers.
+ *
+ * A single event or streamed batch whose publish fails is published once more through another namespace,
+ * so the events that probe an unavailable namespace are delayed rather than lost.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class MultiNamespacePublisherService implements EventHubPublisherService {
+
+    // Share of its weight that a namespace keeps however unhealthy it is, so it is still probed
+    private static final double MIN_HEALTH = 0.02;
+
+    // Latencies below this are treated as equal, so small jitter does not shift traffic
+    private static final double LATENCY_FLOOR_NANOS = 1_000_000;
+
+    // The namespaces taking part in active-active publishing
+    private final List<NamespaceRoute> routes;
+
+    /**
+     * Synchronous publishing is not supported in this service.
+     * Use SyncEventHubPublisherService for synchronous publishing.
+     *
+     * @param event   The CloudEvent to be published.
+     * @param context The execution context for logging.
+     * @throws UnsupportedOperationException Always thrown to indicate unsupported operation.
+     */
+    @Override
+    public void publishSync(CloudEvent event, ExecutionContext context) {
+        throw new UnsupportedOperationException("Use SyncEventHubPublisherService for sync publishing.");
+    }
+
+    /**
+     * Publishes a CloudEvent through the namespace chosen for it. If that publish fails, the event is
+     * published once more through one of the other namespaces. Every outcome is recorded in the health
+     * of the namespace it was published through.
+     *
+     * @param event   The CloudEvent to be published.
+     * @param context The execution context for logging.
+     * @return A CompletableFuture that completes when the event is successfully published.
+     */
+    @Override
+    public CompletableFuture<Void> publishAsync(CloudEvent event, ExecutionContext context) {
+        NamespaceRoute route = selectRoute();
+        return publishThrough(route, event, context).exceptionallyCompose(ex -> {
+            if (routes.size() == 1) {
+                return CompletableFuture.failedFuture(ex);
+            }
+            NamespaceRoute fallback = selectRoute(route);
+            context.getLogger().warning("Republishing " + event.getId() + " through namespace " + fallback.getName());
+            return publishThrough(fallback, event, context);
+        });
+    }
+
+    /**
+     * Publishes a CloudEvent through one namespace and records the outcome in that namespace's health.
+     *
+     * @param route   The namespace to publish through.
+     * @param event   The CloudEvent to be published.
+     * @param context The execution context for logging.
+     * @return A CompletableFuture that completes when the event is successfully published.
+     */
+    private CompletableFuture<Void> publishThrough(NamespaceRoute route, CloudEvent event, ExecutionContext context) {
+        long start = System.nanoTime();
+
+        CompletableFuture<Void> future;
+        try {
+            future = route.getPublisher().publishAsync(event, context);
+        } catch (RuntimeException e) {
+            route.recordFailure();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return future.whenComplete((res, ex) -> {
+            if (ex == null) {
+                route.recordSuccess(System.nanoTime() - start);
+            } else {
+                route.recordFailure();
+                context.getLogger().warning("Publish through namespace " + route.getName() + " failed: " + ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Publishes a stream of CloudEvents, routing each event to a namespace as it arrives.
+     * Every namespace receives its own sub-stream, published with that namespace's streaming publisher.
+     * A batch that fails is published once more through another namespace, and only the outcome of
+     * that second publish is reported for its events.
+     *
+     * @param events  The stream of CloudEvents to be published.
+     * @param context The execution context for logging.
+     * @return A stream with one PublishResult per batch sent, across all namespaces.
+     */
+    @Override
+    public Flux<PublishResult> publish(Flux<CloudEvent> events, ExecutionContext context) {
+        return events
+            .groupBy(event -> selectRoute())
+            // Every namespace group has to be subscribed at once, otherwise groupBy stalls
+            .flatMap(group -> publishThrough(group.key(), group, context), Math.max(1, routes.size()));
+    }
+
+    /**
+     * Publishes the sub-stream of one namespace, records every batch outcome in its health
+     * and re-routes failed batches through another namespace.
+     *
+     * @param route   The namespace to publish through.
+     * @param events  The events routed to the namespace.
+     * @param context The execution context for logging.
+     * @return A stream with one PublishResult per batch, with failed batches replaced by the results of their re-route.
+     */
+    private Flux<PublishResult> publishThrough(NamespaceRoute route, Flux<CloudEvent> events, ExecutionContext context) {
+        // Events sent and not yet reported on, by id, so that a failed batch can be published again
+        Map<String, Queue<CloudEvent>> unreported = new ConcurrentHashMap<>();
+        Flux<CloudEvent> tracked = events.doOnNext(event -> unreported.compute(event.getId(), (id, sameId) -> {
+            Queue<CloudEvent> queue = sameId == null ? new ArrayDeque<>() : sameId;
+            queue.add(event);
+            return queue;
+        }));
+
+        return route.getPublisher().publish(tracked, context)
+            .flatMap(result -> {
+                List<CloudEvent> batch = takeEvents(unreported, result.getEventIds());
+                record(route, result);
+                if (result.isSuccess() || routes.size() == 1 || batch.isEmpty()) {
+                    return Flux.just(result);
+                }
+                NamespaceRoute fallback = selectRoute(route);
+                context.getLogger().warning("Republishing a batch of " + batch.size() + " events from namespace "
+                    + route.getName() + " through namespace " + fallback.getName());
+                return fallback.getPublisher().publish(Flux.fromIterable(batch), context)
+                    .doOnNext(retried -> record(fallback, retried));
+            });
+    }
+
+    /**
+     * Removes the events of a reported batch from the events awaiting a report.
+     */
+    private static List<CloudEvent> takeEvents(Map<String, Queue<CloudEvent>> unreported, List<String> eventIds) {
+        List<CloudEvent> batch = new ArrayList<>(eventIds.size());
+        for (String id : eventIds) {
+            // Updated atomically per id, as more events may be sent while a batch is reported
+            unreported.computeIfPresent(id, (key, sameId) -> {
+                CloudEvent event = sameId.poll();
+                if (event != null) {
+                    batch.add(event);
+                }
+                return sameId.isEmpty() ? null : sameId;
+            });
+        }
+        return batch;
+    }
+
+    /**
+     * Records the outcome of a streamed batch in a namespace's health, with its latency when it is known.
+     */
+    private static void record(NamespaceRoute route, PublishResult result) {
+        if (!result.isSuccess()) {
+            route.recordFailure();
+        } else if (result.getLatencyNanos() > 0) {
+            route.recordSuccess(result.getLatencyNanos());
+        } else {
+            route.recordSuccess();
+        }
+    }
+
+    /**
+     * Chooses a namespace by weighted random choice, with each weight scaled by the namespace's health.
+     *
+     * @return The namespace route to publish through.
+     */
+    NamespaceRoute selectRoute() {
+        return selectRoute(null);
+    }
+
+    /**
+     * Chooses a namespace other than the excluded one by weighted random choice,
+     * with each weight scaled by the namespace's health.
+     *
+     * @param excluded The namespace not to choose, or null to choose among all of them.
+     * @return The namespace route to publish through.
+     */
+    NamespaceRoute selectRoute(NamespaceRoute excluded) {
+        if (routes.size() == 1) {
+            return routes.get(0);
+        }
+
+        double fastest = Double.MAX_VALUE;
+        for (NamespaceRoute route : routes) {
+            if (route.getLatencyNanos() > 0) {
+                fastest = Math.min(fastest, Math.max(LATENCY_FLOOR_NANOS, route.getLatencyNanos()));
+            }
+        }
+
+        double[] effectiveWeights = new double[routes.size()];
+        double total = 0;
+        for (int i = 0; i < routes.size(); i++) {
+            NamespaceRoute route = routes.get(i);
+            if (route == excluded) {
+                continue;
+            }
+            double success = 1.0 - route.getErrorRate();
+            double health = success * success;
+            if (route.getLatencyNanos() > 0 && fastest < Double.MAX_VALUE) {
+                health *= fastest / Math.max(LATENCY_FLOOR_NANOS, route.getLatencyNanos());
+            }
+            effectiveWeights[i] = route.getWeight() * Math.max(MIN_HEALTH, health);
+            total += effectiveWeights[i];
+        }
+
+        double target = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < effectiveWeights.length; i++) {
+            target -= effectiveWeights[i];
+            if (target < 0) {
+                return routes.get(i);
+            }
+        }
+        // Rounding left the target past the last weight; fall back to the last eligible namespace
+        for (int i = routes.size() - 1; i > 0; i--) {
+            if (routes.get(i) != excluded) {
+                return routes.get(i);
+            }
+        }
+        return routes.get(0);
+    }
+}
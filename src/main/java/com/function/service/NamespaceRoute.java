@@ -0,0 +1,74 @@
+package com.function.service;
+
+import com.function.util.Ewma;
+import lombok.Getter;
+
+/**
+ * One Event Hubs namespace taking part in active-active publishing: its publisher,
+ * its configured share of the traffic and the recent health observed when publishing to it.
+ */
+public class NamespaceRoute {
+
+    // Smoothing factor of the health averages; about the last 20 publishes dominate
+    private static final double ALPHA = 0.1;
+
+    @Getter
+    private final String name;
+    @Getter
+    private final double weight;
+    @Getter
+    private final EventHubPublisherService publisher;
+
+    private final Ewma errorRate = new Ewma(ALPHA, 0.0);
+    private final Ewma latencyNanos = new Ewma(ALPHA, 0.0);
+
+    /**
+     * @param name      The namespace, used for logging.
+     * @param weight    The namespace's share of the traffic while all namespaces are healthy.
+     * @param publisher The publisher bound to this namespace's producer.
+     */
+    public NamespaceRoute(String name, double weight, EventHubPublisherService publisher) {
+        this.name = name;
+        this.weight = weight;
+        this.publisher = publisher;
+    }
+
+    /**
+     * @return The recent share of failed publishes, between 0 and 1.
+     */
+    public double getErrorRate() {
+        return errorRate.get();
+    }
+
+    /**
+     * @return The recent average publish latency in nanoseconds, or 0 before the first success.
+     */
+    public double getLatencyNanos() {
+        return latencyNanos.get();
+    }
+
+    /**
+     * Records a successful publish through this namespace.
+     *
+     * @param nanos How long the publish took.
+     */
+    public void recordSuccess(long nanos) {
+        errorRate.update(0.0);
+        latencyNanos.update(nanos);
+    }
+
+    /**
+     * Records a successful publish through this namespace whose latency is not known,
+     * such as a batch of the streaming publisher.
+     */
+    public void recordSuccess() {
+        errorRate.update(0.0);
+    }
+
+    /**
+     * Records a failed publish through this namespace.
+     */
+    public void recordFailure() {
+        errorRate.update(1.0);
+    }
+}
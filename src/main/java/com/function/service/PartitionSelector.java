@@ -0,0 +1,221 @@
+package com.function.service;
+
+import com.azure.messaging.eventhubs.EventHubProducerAsyncClient;
+import com.function.util.Ewma;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Chooses the partition for events and batches that have no partition key, steering traffic away
+ * from partitions that are currently slow or failing.
+ *
+ * Each partition keeps exponentially weighted moving averages of its send latency and error rate,
+ * updated lock-free with compare-and-set. Selection uses "power of two choices": two partitions are
+ * picked at random and the healthier one wins, which spreads load evenly across healthy partitions
+ * while a degraded partition only wins when it is compared against another degraded one.
+ * A small share of selections is made uniformly at random so that degraded partitions keep being
+ * probed and can recover.
+ *
+ * Partition ids are loaded in the background and refreshed periodically; until they are known,
+ * select returns null and the caller lets the service choose the partition.
+ */
+@Slf4j
+public class PartitionSelector {
+
+    // Error rates closer than this are considered equal, and the partitions are compared by latency instead
+    private static final double ERROR_RATE_TOLERANCE = 0.05;
+
+    private final Supplier<Mono<List<String>>> partitionIdSource;
+    private final long refreshIntervalNanos;
+    private final double probeRatio;
+    private final double alpha;
+
+    // Immutable snapshot of the known partitions, replaced wholesale on refresh
+    private volatile Snapshot snapshot = new Snapshot(new String[0], Map.of());
+    private volatile long lastRefreshNanos;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    /**
+     * Creates a selector.
+     *
+     * @param partitionIdSource Supplies the current partition ids of the hub.
+     * @param refreshInterval   How often the partition ids are reloaded.
+     * @param probeRatio        The share of selections made at random to probe degraded partitions.
+     * @param alpha             The EWMA smoothing factor; higher values react faster to change.
+     */
+    public PartitionSelector(Supplier<Mono<List<String>>> partitionIdSource, Duration refreshInterval, double probeRatio, double alpha) {
+        this.partitionIdSource = partitionIdSource;
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+        this.probeRatio = probeRatio;
+        this.alpha = alpha;
+    }
+
+    /**
+     * Creates a selector whose partition ids come from the hub's runtime properties.
+     *
+     * @param client          The producer used to query the hub's properties.
+     * @param refreshInterval How often the partition ids are reloaded.
+     * @param probeRatio      The share of selections made at random to probe degraded partitions.
+     * @return A PartitionSelector for the client's hub.
+     */
+    public static PartitionSelector forClient(EventHubProducerAsyncClient client, Duration refreshInterval, double probeRatio) {
+        return new PartitionSelector(
+            () -> client.getEventHubProperties().map(properties -> properties.getPartitionIds().stream().toList()),
+            refreshInterval,
+            probeRatio,
+            0.2);
+    }
+
+    /**
+     * Creates a selector that never chooses a partition, leaving the choice to the service.
+     *
+     * @return A disabled PartitionSelector.
+     */
+    public static PartitionSelector disabled() {
+        return new PartitionSelector(null, Duration.ZERO, 0, 0);
+    }
+
+    /**
+     * Chooses a partition for an unkeyed send.
+     *
+     * @return The partition id, or null if the selector is disabled or the partitions are not known yet.
+     */
+    public String select() {
+        return select(null);
+    }
+
+    /**
+     * Chooses a partition for an unkeyed send other than the given one, e.g. for a hedged copy.
+     *
+     * @param excluded The partition id that must not be chosen, or null.
+     * @return The partition id, or null if no other partition is available.
+     */
+    public String select(String excluded) {
+        if (partitionIdSource == null) {
+            return null;
+        }
+        refreshIfStale();
+
+        Snapshot current = snapshot;
+        String[] ids = current.ids();
+        Map<String, PartitionHealth> health = current.health();
+        int candidates = excluded != null && health.containsKey(excluded) ? ids.length - 1 : ids.length;
+        if (candidates <= 0) {
+            return null;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String first = pick(ids, excluded, random);
+        if (candidates == 1 || random.nextDouble() < probeRatio) {
+            // Probe: take the random pick regardless of its health
+            return first;
+        }
+        String second = pick(ids, excluded, random);
+        while (second.equals(first)) {
+            second = pick(ids, excluded, random);
+        }
+        return health.get(first).isHealthierThan(health.get(second)) ? first : second;
+    }
+
+    /**
+     * Records a successful send to a partition.
+     *
+     * @param partitionId  The partition the send went to.
+     * @param latencyNanos How long the send took.
+     */
+    public void recordSuccess(String partitionId, long latencyNanos) {
+        PartitionHealth health = snapshot.health().get(partitionId);
+        if (health != null) {
+            health.latency.update(latencyNanos);
+            health.errors.update(0.0);
+        }
+    }
+
+    /**
+     * Records a failed send to a partition.
+     *
+     * @param partitionId The partition the send went to.
+     */
+    public void recordFailure(String partitionId) {
+        PartitionHealth health = snapshot.health().get(partitionId);
+        if (health != null) {
+            health.errors.update(1.0);
+        }
+    }
+
+    /**
+     * Picks a random partition id other than the excluded one.
+     */
+    private static String pick(String[] ids, String excluded, ThreadLocalRandom random) {
+        String id;
+        do {
+            id = ids[random.nextInt(ids.length)];
+        } while (id.equals(excluded));
+        return id;
+    }
+
+    /**
+     * Starts a background reload of the partition ids if the current ones are missing or too old.
+     * Only one reload runs at a time; callers never wait for it.
+     */
+    private void refreshIfStale() {
+        boolean stale = snapshot.ids().length == 0 || System.nanoTime() - lastRefreshNanos >= refreshIntervalNanos;
+        if (!stale || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        partitionIdSource.get()
+            .doFinally(signal -> refreshing.set(false))
+            .subscribe(this::applyPartitionIds,
+                error -> log.warn("Failed to refresh partition ids: {}", error.getMessage()));
+    }
+
+    /**
+     * Replaces the known partitions, keeping the health history of partitions that still exist.
+     */
+    private void applyPartitionIds(List<String> ids) {
+        Map<String, PartitionHealth> previous = snapshot.health();
+        Map<String, PartitionHealth> next = new LinkedHashMap<>();
+        for (String id : ids) {
+            next.put(id, previous.getOrDefault(id, new PartitionHealth(alpha)));
+        }
+        snapshot = new Snapshot(ids.toArray(new String[0]), Map.copyOf(next));
+        lastRefreshNanos = System.nanoTime();
+    }
+
+    /**
+     * The partition ids together with their health, so that both are always read consistently.
+     */
+    private record Snapshot(String[] ids, Map<String, PartitionHealth> health) {
+    }
+
+    /**
+     * Health counters of a single partition.
+     */
+    private static final class PartitionHealth {
+
+        private final Ewma latency;
+        private final Ewma errors;
+
+        PartitionHealth(double alpha) {
+            this.latency = new Ewma(alpha, 0.0);
+            this.errors = new Ewma(alpha, 0.0);
+        }
+
+        // A clearly lower error rate wins; otherwise the lower average latency does
+        boolean isHealthierThan(PartitionHealth other) {
+            double errorGap = errors.get() - other.errors.get();
+            if (Math.abs(errorGap) > ERROR_RATE_TOLERANCE) {
+                return errorGap < 0;
+            }
+            return latency.get() <= other.latency.get();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.function.service;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Outcome of publishing one batch of events through the streaming publish API.
+ * A failed batch is reported as a result rather than terminating the stream,
+ * so the caller can decide whether to dead-letter, re-submit or stop.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class PublishResult {
+
+    // Ids of the CloudEvents contained in the batch, in send order
+    private final List<String> eventIds;
+    // Total serialized size of the batch
+    private final long sizeInBytes;
+    // How long the batch took to be acknowledged, or 0 if not known
+    private final long latencyNanos;
+    // Cause of the failure, or null if the batch was published
+    private final Throwable error;
+
+    public static PublishResult success(List<String> eventIds, long sizeInBytes) {
+        return success(eventIds, sizeInBytes, 0);
+    }
+
+    public static PublishResult success(List<String> eventIds, long sizeInBytes, long latencyNanos) {
+        return new PublishResult(eventIds, sizeInBytes, latencyNanos, null);
+    }
+
+    public static PublishResult failure(List<String> eventIds, long sizeInBytes, Throwable error) {
+        return new PublishResult(eventIds, sizeInBytes, 0, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.function.service;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Tuning knobs for the streaming publish API.
+ * Batches are closed when they reach maxBatchEvents, maxBatchBytes or maxBatchWait, whichever comes first,
+ * and at most maxInFlightBatches sends are outstanding at any time; beyond that no further events are
+ * requested from the source.
+ */
+@Value
+@Builder
+public class StreamingPublishOptions {
+
+    @Builder.Default
+    int maxBatchEvents = 100;
+
+    // Kept below the hub's maximum message size to leave room for AMQP framing and event properties
+    @Builder.Default
+    long maxBatchBytes = 768L * 1024L;
+
+    @Builder.Default
+    Duration maxBatchWait = Duration.ofMillis(100);
+
+    @Builder.Default
+    int maxInFlightBatches = 4;
+
+    // Total number of send attempts per batch, including the first one
+    @Builder.Default
+    int maxAttempts = 3;
+
+    @Builder.Default
+    Duration retryBackoff = Duration.ofMillis(200);
+
+    public static StreamingPublishOptions defaults() {
+        return StreamingPublishOptions.builder().build();
+    }
+}
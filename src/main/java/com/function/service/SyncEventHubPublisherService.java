@@ -2,15 +2,23 @@ package com.function.service;
 
 import com.azure.messaging.eventhubs.EventData;
 import com.azure.messaging.eventhubs.EventHubProducerClient;
+import com.function.claimcheck.ClaimCheckProcessor;
+import com.function.jfr.PublishEnqueueWaitEvent;
+import com.function.jfr.PublishSendEvent;
+import com.function.jfr.PublishSerializeEvent;
+import com.function.jfr.PublishStageEvent;
+import com.function.util.PublishDeadlines;
 import com.function.util.RetryUtils;
+import com.function.util.ThroughputLimiter;
 
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.format.EventFormat;
-import io.cloudevents.core.provider.EventFormatProvider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import com.microsoft.azure.functions.ExecutionContext;
+import reactor.core.publisher.Flux;
 
 import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
@@ -27,37 +35,71 @@ public class SyncEventHubPublisherService implements EventHubPublisherService {
 
     // Azure Event Hub producer client for sending events synchronously
     private final EventHubProducerClient producerClient;
+    // Copied onto the constructor parameter by Lombok (see lombok.config), so the bean can be autowired
+    @Value("${eventhub.cloudevent.topic:}")
     private final String cloudEventTopic;
+    // Client-side limiter shared by all publishers to stay within the namespace's ingress quota
+    private final ThroughputLimiter throughputLimiter;
+    // Offloads payloads above the size threshold so the message itself stays small
+    private final ClaimCheckProcessor claimCheckProcessor;
+    // Overall time limit of a publish; the per-attempt limit is the client's try-timeout
+    private final PublishDeadlines deadlines;
+    // Structured-mode format of the published envelope, e.g. JsonFormat or EnvelopeTemplateEventFormat
+    private final EventFormat eventFormat;
 
     /**
      * Publishes a CloudEvent to Azure Event Hubs synchronously.
-     * This method uses retry logic to handle transient failures.
+     * The event is admitted through the throughput limiter once, before any send attempt,
+     * and the send itself uses retry logic to handle transient failures.
      *
      * @param event   The CloudEvent to be published.
      * @param context The execution context for logging.
-     * @throws RuntimeException If the event format is unsupported or publishing fails.
+     * @throws RuntimeException If serialization or publishing fails.
+     * @throws com.function.util.ThroughputLimitExceededException If the limiter rejects the event.
      */
     public void publishSync(CloudEvent event, ExecutionContext context) {
-        RetryUtils.retry(() -> {
-            // Resolve the CloudEvent format for serialization
-            EventFormat eventFormat = EventFormatProvider
-                .getInstance()
-                .resolveFormat("application/cloudevents+json");
-
-            // Throw an exception if the required format is not supported
-            if (eventFormat == null) {
-                throw new RuntimeException("Event format 'application/cloudevents+json' is not supported");
-            }
+        // Move an oversized payload to the claim-check store, then serialize the (now small) envelope
+        PublishSerializeEvent serializeStage = PublishSerializeEvent.start();
+        String claimCheckReference = null;
+        byte[] eventBytes;
+        try {
+            CloudEvent outgoing = claimCheckProcessor.offload(event);
+            claimCheckReference = ClaimCheckProcessor.referenceOf(outgoing);
+            eventBytes = eventFormat.serialize(outgoing);
+        } catch (RuntimeException e) {
+            serializeStage.complete(event.getId(), null, 0, PublishStageEvent.FAILURE);
+            claimCheckProcessor.discard(claimCheckReference);
+            throw e;
+        }
+        serializeStage.complete(event.getId(), null, eventBytes.length, PublishStageEvent.SUCCESS);
 
-            // Serialize the CloudEvent into a byte array
-            byte[] eventBytes = eventFormat.serialize(event);
+        // Wait for (or be rejected by) the client-side ingress budget before touching the broker
+        PublishEnqueueWaitEvent enqueueStage = PublishEnqueueWaitEvent.start();
+        try {
+            throughputLimiter.acquire(eventBytes.length, 1);
+        } catch (RuntimeException e) {
+            enqueueStage.complete(event.getId(), null, eventBytes.length, PublishStageEvent.REJECTED);
+            // Nothing was sent, so the offloaded payload would never be read
+            claimCheckProcessor.discard(claimCheckReference);
+            throw e;
+        }
+        enqueueStage.complete(event.getId(), null, eventBytes.length, PublishStageEvent.SUCCESS);
 
-            // Wrap the serialized data into an EventData object and send it synchronously
-            producerClient.send(Collections.singletonList(new EventData(eventBytes)));
+        // A failed send may still have been accepted, so from here on the offloaded payload is kept
+        RetryUtils.retry(() -> {
+            PublishSendEvent sendStage = PublishSendEvent.start();
+            try {
+                // Wrap the serialized data into an EventData object and send it synchronously
+                producerClient.send(Collections.singletonList(new EventData(eventBytes)));
+            } catch (RuntimeException e) {
+                sendStage.complete(event.getId(), null, eventBytes.length, PublishStageEvent.FAILURE);
+                throw e;
+            }
+            sendStage.complete(event.getId(), null, eventBytes.length, PublishStageEvent.SUCCESS);
 
             // Return null to satisfy the lambda's return type
             return null;
-        }, context);
+        }, context, event.getId(), deadlines);
     }
 
     /**
@@ -72,4 +114,17 @@ public class SyncEventHubPublisherService implements EventHubPublisherService {
     public CompletableFuture<Void> publishAsync(CloudEvent event, ExecutionContext context) {
         throw new UnsupportedOperationException("Use AsyncEventHubPublisherService for async publishing.");
     }
+
+    /**
+     * Streaming publishing is not supported in this service.
+     * Use AsyncEventHubPublisherService for streaming publishing.
+     *
+     * @param events  The stream of CloudEvents to be published.
+     * @param context The execution context for logging.
+     * @throws UnsupportedOperationException Always thrown to indicate unsupported operation.
+     */
+    @Override
+    public Flux<PublishResult> publish(Flux<CloudEvent> events, ExecutionContext context) {
+        throw new UnsupportedOperationException("Use AsyncEventHubPublisherService for streaming publishing.");
+    }
 }
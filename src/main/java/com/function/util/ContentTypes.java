@@ -0,0 +1,22 @@
+package com.function.util;
+
+/**
+ * Utility class for the datacontenttype of CloudEvents.
+ */
+public class ContentTypes {
+
+    /**
+     * Tells whether data of a content type is embedded as-is in a structured-mode JSON envelope,
+     * following the rule of the CloudEvents JSON format.
+     *
+     * @param contentType The datacontenttype of an event, or null.
+     * @return true for JSON media types, and for a missing content type, which implies application/json.
+     */
+    public static boolean isJson(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String mediaType = contentType.split(";", 2)[0].trim();
+        return mediaType.equals("application/json") || mediaType.equals("text/json") || mediaType.endsWith("+json");
+    }
+}
@@ -0,0 +1,63 @@
+package com.function.util;
+
+import io.cloudevents.CloudEvent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the most recently seen CloudEvent keys so that consumers can drop duplicates.
+ * Duplicates are expected when hedged sends are enabled, since both copies of a hedged
+ * event carry the same CloudEvent id and either or both may be delivered.
+ *
+ * An event is identified by its source and id together, as the CloudEvents spec defines uniqueness,
+ * so events of different producers that happen to reuse an id are not mistaken for each other; see keyOf.
+ * The filter lives in memory, so it only catches duplicates consumed by the same instance.
+ */
+public class DuplicateEventFilter {
+
+    private final Map<String, Boolean> seen;
+
+    /**
+     * @param capacity The number of most recent ids remembered.
+     */
+    public DuplicateEventFilter(int capacity) {
+        this.seen = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the key identifying an event: its source and id, combined so that no two pairs share a key.
+     *
+     * @param event The CloudEvent.
+     * @return The key to pass to firstSeen and forget.
+     */
+    public static String keyOf(CloudEvent event) {
+        String source = event.getSource().toString();
+        return source.length() + ":" + source + event.getId();
+    }
+
+    /**
+     * Records an event id and reports whether it is new.
+     *
+     * @param eventId The CloudEvent id.
+     * @return true if the id has not been seen recently and the event should be processed.
+     */
+    public synchronized boolean firstSeen(String eventId) {
+        return seen.put(eventId, Boolean.TRUE) == null;
+    }
+
+    /**
+     * Forgets an event id, so that the next event with it counts as new again.
+     * Used when an event that was let through could not be processed and will be redelivered.
+     *
+     * @param eventId The CloudEvent id.
+     */
+    public synchronized void forget(String eventId) {
+        seen.remove(eventId);
+    }
+}
@@ -0,0 +1,300 @@
+package com.function.util;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.CloudEventData;
+import io.cloudevents.SpecVersion;
+import io.cloudevents.core.format.EventFormat;
+import io.cloudevents.core.provider.EventFormatProvider;
+import io.cloudevents.jackson.JsonFormat;
+import io.cloudevents.rw.CloudEventDataMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Structured-mode JSON CloudEvent format that caches the encoding of the attributes events on a stream share.
+ * The constant attributes (specversion, type, source, datacontenttype and dataschema) of each template are
+ * encoded once into a byte prefix held in a bounded, approximately LRU cache; every event then only encodes
+ * its id, subject, time, extensions and data after that prefix. The output is plain structured JSON, readable by JsonFormat.
+ *
+ * Cache hits take no lock, so serializers on many threads do not contend; only adding a template, and evicting
+ * the least recently used one to make room, is serialized.
+ *
+ * JSON data is copied as-is rather than parsed and re-written. Only its first and last bytes are checked; an empty
+ * payload, or one that does not start and end like a JSON value, is written base64-encoded so the envelope stays valid.
+ * Events of other spec versions are delegated to JsonFormat, as is all deserialization.
+ */
+public class EnvelopeTemplateEventFormat implements EventFormat {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final EventFormat jsonFormat;
+    private final int capacity;
+    private final Map<Template, CachedPrefix> prefixes = new ConcurrentHashMap<>();
+    // Logical clock stamping each use of a prefix, to find the least recently used one
+    private final AtomicLong clock = new AtomicLong();
+
+    /**
+     * @param capacity The number of most recently used templates whose prefix is kept.
+     */
+    public EnvelopeTemplateEventFormat(int capacity) {
+        this.jsonFormat = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Serializes a CloudEvent as structured-mode JSON, reusing the cached prefix of its template.
+     *
+     * @param event The CloudEvent to be serialized.
+     * @return The JSON encoding of the event.
+     */
+    @Override
+    public byte[] serialize(CloudEvent event) {
+        if (event.getSpecVersion() != SpecVersion.V1) {
+            return jsonFormat.serialize(event);
+        }
+
+        byte[] prefix = prefixFor(new Template(
+            event.getType(), event.getSource(), event.getDataContentType(), event.getDataSchema()));
+        CloudEventData data = event.getData();
+        byte[] payload = data == null ? null : data.toBytes();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(prefix.length + (payload == null ? 0 : payload.length) + 128);
+        out.writeBytes(prefix);
+        writeString(out, "id", event.getId());
+        if (event.getSubject() != null) {
+            writeString(out, "subject", event.getSubject());
+        }
+        if (event.getTime() != null) {
+            writeString(out, "time", event.getTime().format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        }
+        for (String name : event.getExtensionNames()) {
+            writeExtension(out, name, event.getExtension(name));
+        }
+        if (payload != null) {
+            writeData(out, event.getDataContentType(), payload);
+        }
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    @Override
+    public CloudEvent deserialize(byte[] bytes, CloudEventDataMapper<? extends CloudEventData> mapper) {
+        return jsonFormat.deserialize(bytes, mapper);
+    }
+
+    @Override
+    public Set<String> deserializableContentTypes() {
+        return jsonFormat.deserializableContentTypes();
+    }
+
+    @Override
+    public String serializedContentType() {
+        return jsonFormat.serializedContentType();
+    }
+
+    /**
+     * @return The number of templates whose prefix is currently cached.
+     */
+    int cachedTemplates() {
+        return prefixes.size();
+    }
+
+    /**
+     * @return Whether the prefix of the event's template is currently cached.
+     */
+    boolean isCached(CloudEvent event) {
+        return prefixes.containsKey(new Template(
+            event.getType(), event.getSource(), event.getDataContentType(), event.getDataSchema()));
+    }
+
+    /**
+     * Returns the encoded prefix of a template, encoding and caching it on first use.
+     * The prefix opens the JSON object and holds every constant attribute; it never ends with a comma.
+     */
+    private byte[] prefixFor(Template template) {
+        CachedPrefix cached = prefixes.get(template);
+        if (cached == null) {
+            cached = insert(template);
+        }
+        cached.lastUsed = clock.incrementAndGet();
+        return cached.bytes;
+    }
+
+    /**
+     * Encodes and caches the prefix of a template that missed the cache, first evicting the least recently
+     * used prefix if the cache is full. Another thread may have cached the template meanwhile; its prefix is kept.
+     */
+    private synchronized CachedPrefix insert(Template template) {
+        CachedPrefix cached = prefixes.get(template);
+        if (cached != null) {
+            return cached;
+        }
+        if (prefixes.size() >= capacity) {
+            prefixes.entrySet().stream()
+                .min((a, b) -> Long.compare(a.getValue().lastUsed, b.getValue().lastUsed))
+                .ifPresent(eldest -> prefixes.remove(eldest.getKey()));
+        }
+        cached = new CachedPrefix(encodePrefix(template));
+        prefixes.put(template, cached);
+        return cached;
+    }
+
+    private static byte[] encodePrefix(Template template) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        out.write('{');
+        writeName(out, "specversion");
+        writeQuoted(out, SpecVersion.V1.toString());
+        writeString(out, "type", template.type());
+        writeString(out, "source", template.source().toString());
+        if (template.dataContentType() != null) {
+            writeString(out, "datacontenttype", template.dataContentType());
+        }
+        if (template.dataSchema() != null) {
+            writeString(out, "dataschema", template.dataSchema().toString());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the data the way JsonFormat does by default: inline for JSON, base64 for everything else, text included.
+     * JSON data that is empty or plainly malformed is written base64-encoded too, which readers decode to the same bytes.
+     */
+    private static void writeData(ByteArrayOutputStream out, String contentType, byte[] payload) {
+        if (ContentTypes.isJson(contentType) && looksLikeJsonValue(payload)) {
+            out.write(',');
+            writeName(out, "data");
+            out.writeBytes(payload);
+        } else {
+            writeString(out, "data_base64", Base64.getEncoder().encodeToString(payload));
+        }
+    }
+
+    /**
+     * Writes an extension with the JSON type matching its value: numbers and booleans as-is, everything else as a string.
+     */
+    private static void writeExtension(ByteArrayOutputStream out, String name, Object value) {
+        if (value instanceof Number || value instanceof Boolean) {
+            out.write(',');
+            writeName(out, name);
+            out.writeBytes(value.toString().getBytes(StandardCharsets.US_ASCII));
+        } else if (value instanceof byte[] bytes) {
+            writeString(out, name, Base64.getEncoder().encodeToString(bytes));
+        } else if (value instanceof OffsetDateTime time) {
+            writeString(out, name, time.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        } else if (value != null) {
+            writeString(out, name, value.toString());
+        }
+    }
+
+    /**
+     * Checks that a payload starts and ends like a single JSON value. This is not a full parse, but rejects
+     * empty payloads and the text or binary data most often mislabelled as JSON, which would break the envelope.
+     */
+    static boolean looksLikeJsonValue(byte[] payload) {
+        int first = 0;
+        while (first < payload.length && isWhitespace(payload[first])) {
+            first++;
+        }
+        int last = payload.length - 1;
+        while (last > first && isWhitespace(payload[last])) {
+            last--;
+        }
+        if (first >= payload.length) {
+            return false;
+        }
+        byte start = payload[first];
+        byte end = payload[last];
+        return switch (start) {
+            case '{' -> end == '}';
+            case '[' -> end == ']';
+            case '"' -> end == '"' && last > first;
+            case 't', 'f' -> end == 'e';
+            case 'n' -> end == 'l';
+            default -> (start == '-' || isDigit(start)) && isDigit(end);
+        };
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Writes a member separator followed by a string member; used for every member after the opening one.
+     */
+    private static void writeString(ByteArrayOutputStream out, String name, String value) {
+        out.write(',');
+        writeName(out, name);
+        writeQuoted(out, value);
+    }
+
+    private static void writeName(ByteArrayOutputStream out, String name) {
+        writeQuoted(out, name);
+        out.write(':');
+    }
+
+    /**
+     * Writes a JSON string literal in UTF-8, escaping quotes, backslashes and control characters.
+     */
+    private static void writeQuoted(ByteArrayOutputStream out, String value) {
+        out.write('"');
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        int start = 0;
+        for (int i = 0; i < utf8.length; i++) {
+            int b = utf8[i] & 0xff;
+            if (b >= 0x20 && b != '"' && b != '\\') {
+                continue;
+            }
+            out.write(utf8, start, i - start);
+            out.write('\\');
+            switch (b) {
+                case '"' -> out.write('"');
+                case '\\' -> out.write('\\');
+                case '\n' -> out.write('n');
+                case '\r' -> out.write('r');
+                case '\t' -> out.write('t');
+                default -> {
+                    out.write('u');
+                    out.write('0');
+                    out.write('0');
+                    out.write(HEX[b >> 4]);
+                    out.write(HEX[b & 0xf]);
+                }
+            }
+            start = i + 1;
+        }
+        out.write(utf8, start, utf8.length - start);
+        out.write('"');
+    }
+
+    /**
+     * An encoded prefix and the time it was last used, on the clock of the format.
+     */
+    private static final class CachedPrefix {
+
+        private final byte[] bytes;
+        private volatile long lastUsed;
+
+        private CachedPrefix(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The attributes shared by the events of a stream, identifying one cached prefix.
+     */
+    private record Template(String type, URI source, String dataContentType, URI dataSchema) {
+    }
+}
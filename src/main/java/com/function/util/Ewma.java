@@ -0,0 +1,44 @@
+package com.function.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exponentially weighted moving average that can be updated from any thread without locking.
+ * The current value is stored as the bits of a double in an AtomicLong and replaced with compare-and-set.
+ */
+public class Ewma {
+
+    private final double alpha;
+    private final AtomicLong bits;
+
+    /**
+     * @param alpha        The smoothing factor in (0, 1]; higher values react faster to change.
+     * @param initialValue The value before any sample has been recorded.
+     */
+    public Ewma(double alpha, double initialValue) {
+        this.alpha = alpha;
+        this.bits = new AtomicLong(Double.doubleToRawLongBits(initialValue));
+    }
+
+    /**
+     * @return The current average.
+     */
+    public double get() {
+        return Double.longBitsToDouble(bits.get());
+    }
+
+    /**
+     * Folds a new sample into the average.
+     *
+     * @param sample The observed value.
+     */
+    public void update(double sample) {
+        long current;
+        long next;
+        do {
+            current = bits.get();
+            double value = Double.longBitsToDouble(current);
+            next = Double.doubleToRawLongBits(value + alpha * (sample - value));
+        } while (!bits.compareAndSet(current, next));
+    }
+}
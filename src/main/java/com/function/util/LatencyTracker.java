@@ -0,0 +1,59 @@
+package com.function.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the most recent send latencies in a fixed-size ring so that percentiles of
+ * current behaviour can be computed. Recording is lock-free and safe from any thread.
+ */
+public class LatencyTracker {
+
+    private final AtomicLongArray samples;
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * @param capacity The number of most recent samples kept.
+     */
+    public LatencyTracker(int capacity) {
+        this.samples = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * Records one latency sample.
+     *
+     * @param nanos The observed latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long index = count.getAndIncrement();
+        samples.set((int) (index % samples.length()), nanos);
+    }
+
+    /**
+     * @return The number of samples currently held, at most the capacity.
+     */
+    public int size() {
+        return (int) Math.min(count.get(), samples.length());
+    }
+
+    /**
+     * Computes a percentile over the samples currently held.
+     *
+     * @param percentile The percentile as a fraction, e.g. 0.95 for p95.
+     * @return The latency in nanoseconds at that percentile, or 0 if nothing has been recorded.
+     */
+    public long percentile(double percentile) {
+        int size = size();
+        if (size == 0) {
+            return 0L;
+        }
+        long[] snapshot = new long[size];
+        for (int i = 0; i < size; i++) {
+            snapshot[i] = samples.get(i);
+        }
+        Arrays.sort(snapshot);
+        int rank = (int) Math.ceil(percentile * size) - 1;
+        return snapshot[Math.max(0, Math.min(size - 1, rank))];
+    }
+}
@@ -0,0 +1,30 @@
+package com.function.util;
+
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Time limits applied to a publish.
+ * The attempt timeout bounds a single send attempt so that a stuck AMQP link fails fast and is retried;
+ * the overall timeout bounds the publish as a whole, across all attempts and backoff.
+ * A null duration means no limit.
+ */
+@Value
+public class PublishDeadlines {
+
+    Duration attemptTimeout;
+    Duration overallTimeout;
+
+    public static PublishDeadlines none() {
+        return new PublishDeadlines(null, null);
+    }
+
+    public boolean hasAttemptTimeout() {
+        return attemptTimeout != null && !attemptTimeout.isZero() && !attemptTimeout.isNegative();
+    }
+
+    public boolean hasOverallTimeout() {
+        return overallTimeout != null && !overallTimeout.isZero() && !overallTimeout.isNegative();
+    }
+}
@@ -1,8 +1,12 @@
 package com.function.util;
 
+import com.function.jfr.PublishRetryAttemptEvent;
+import com.function.jfr.PublishStageEvent;
 import com.microsoft.azure.functions.ExecutionContext;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Supplier;
 
 /**
@@ -25,12 +29,52 @@ public class RetryUtils {
      * @throws RuntimeException If the operation fails after the maximum number of retries.
      */
     public static <T> T retry(Supplier<T> supplier, ExecutionContext context) {
+        return retry(supplier, context, null);
+    }
+
+    /**
+     * Retries a synchronous operation up to MAX_RETRIES times, recording each attempt
+     * as a JFR event tagged with the given event id.
+     *
+     * @param supplier The operation to be retried, represented as a Supplier.
+     * @param context  The execution context for logging.
+     * @param eventId  The id of the CloudEvent the operation publishes, or null if unknown.
+     * @param <T>      The return type of the operation.
+     * @return The result of the operation if it succeeds within the retry limit.
+     * @throws RuntimeException If the operation fails after the maximum number of retries.
+     */
+    public static <T> T retry(Supplier<T> supplier, ExecutionContext context, String eventId) {
+        return retry(supplier, context, eventId, PublishDeadlines.none());
+    }
+
+    /**
+     * Retries a synchronous operation up to MAX_RETRIES times or until the overall deadline has passed.
+     * A blocking attempt cannot be abandoned from the outside, so the attempt timeout of a synchronous
+     * operation has to be enforced by the operation itself (for Event Hubs, the client's try-timeout);
+     * here no new attempt is started once the overall deadline has passed.
+     *
+     * @param supplier  The operation to be retried, represented as a Supplier.
+     * @param context   The execution context for logging.
+     * @param eventId   The id of the CloudEvent the operation publishes, or null if unknown.
+     * @param deadlines The overall time limit of the operation.
+     * @param <T>       The return type of the operation.
+     * @return The result of the operation if it succeeds within the retry and time limits.
+     * @throws RuntimeException If the operation fails after the maximum number of retries or the deadline.
+     */
+    public static <T> T retry(Supplier<T> supplier, ExecutionContext context, String eventId, PublishDeadlines deadlines) {
+        long deadlineNanos = deadlines.hasOverallTimeout()
+            ? System.nanoTime() + deadlines.getOverallTimeout().toNanos()
+            : Long.MAX_VALUE;
         int attempt = 0;
         while (attempt < MAX_RETRIES) {
+            PublishRetryAttemptEvent attemptEvent = PublishRetryAttemptEvent.start();
             try {
                 // Attempt to execute the operation
-                return supplier.get();
+                T result = supplier.get();
+                attemptEvent.complete(eventId, attempt + 1, PublishStageEvent.SUCCESS);
+                return result;
             } catch (Exception e) {
+                attemptEvent.complete(eventId, attempt + 1, PublishStageEvent.FAILURE);
                 attempt++;
                 // Log the failure and retry if the maximum attempts are not reached
                 context.getLogger().warning("Retry " + attempt + " failed: " + e.getMessage());
@@ -39,6 +83,11 @@ public class RetryUtils {
                     context.getLogger().severe("Operation failed after retries: " + e.getMessage());
                     throw new RuntimeException("Operation failed after retries", e);
                 }
+                if (System.nanoTime() - deadlineNanos >= 0) {
+                    // Out of time: do not start another attempt
+                    context.getLogger().severe("Operation exceeded its deadline: " + e.getMessage());
+                    throw new RuntimeException("Operation exceeded its deadline", e);
+                }
             }
         }
         return null; // This line is unreachable but required for compilation
@@ -52,9 +101,46 @@ public class RetryUtils {
      * @return A CompletableFuture that completes when the operation succeeds or fails after retries.
      */
     public static CompletableFuture<Void> retryAsync(Supplier<CompletableFuture<Void>> operation, ExecutionContext context) {
+        return retryAsync(operation, context, null);
+    }
+
+    /**
+     * Retries an asynchronous operation up to MAX_RETRIES times, recording each attempt
+     * as a JFR event tagged with the given event id.
+     *
+     * @param operation The asynchronous operation to be retried, represented as a Supplier of CompletableFuture.
+     * @param context   The execution context for logging.
+     * @param eventId   The id of the CloudEvent the operation publishes, or null if unknown.
+     * @return A CompletableFuture that completes when the operation succeeds or fails after retries.
+     */
+    public static CompletableFuture<Void> retryAsync(Supplier<CompletableFuture<Void>> operation, ExecutionContext context, String eventId) {
+        return retryAsync(operation, context, eventId, PublishDeadlines.none());
+    }
+
+    /**
+     * Retries an asynchronous operation up to MAX_RETRIES times, bounding every attempt and the whole
+     * operation by the given deadlines. An attempt that exceeds its timeout is cancelled and counts as
+     * a failed attempt; once the overall deadline passes the result fails with a TimeoutException and
+     * no further attempts are started.
+     *
+     * @param operation The asynchronous operation to be retried, represented as a Supplier of CompletableFuture.
+     * @param context   The execution context for logging.
+     * @param eventId   The id of the CloudEvent the operation publishes, or null if unknown.
+     * @param deadlines The per-attempt and overall time limits.
+     * @return A CompletableFuture that completes when the operation succeeds or fails after retries.
+     */
+    public static CompletableFuture<Void> retryAsync(
+        Supplier<CompletableFuture<Void>> operation,
+        ExecutionContext context,
+        String eventId,
+        PublishDeadlines deadlines
+    ) {
         CompletableFuture<Void> result = new CompletableFuture<>();
+        if (deadlines.hasOverallTimeout()) {
+            result.orTimeout(deadlines.getOverallTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        }
         // Start the retry process
-        retryAsyncInternal(operation, context, 0, result);
+        retryAsyncInternal(operation, context, eventId, deadlines, 0, result);
         return result;
     }
 
@@ -63,17 +149,45 @@ public class RetryUtils {
      *
      * @param operation The asynchronous operation to be retried.
      * @param context   The execution context for logging.
+     * @param eventId   The id of the CloudEvent the operation publishes, or null if unknown.
+     * @param deadlines The per-attempt time limit.
      * @param attempt   The current retry attempt.
      * @param result    The CompletableFuture to complete with the operation's result or exception.
      */
     private static void retryAsyncInternal(
         Supplier<CompletableFuture<Void>> operation,
         ExecutionContext context,
+        String eventId,
+        PublishDeadlines deadlines,
         int attempt,
         CompletableFuture<Void> result
     ) {
-        // Execute the asynchronous operation
-        operation.get().whenComplete((res, ex) -> {
+        if (result.isDone()) {
+            // The overall deadline has already failed the operation
+            return;
+        }
+
+        PublishRetryAttemptEvent attemptEvent = PublishRetryAttemptEvent.start();
+
+        // Execute the asynchronous operation, bounded by the attempt timeout if one is configured
+        CompletableFuture<Void> attemptFuture = operation.get();
+        CompletableFuture<Void> timedAttempt = attemptFuture;
+        if (deadlines.hasAttemptTimeout()) {
+            timedAttempt = attemptFuture.copy().orTimeout(deadlines.getAttemptTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        // Abandon the in-flight attempt as soon as the overall result is settled elsewhere
+        result.whenComplete((res, ex) -> attemptFuture.cancel(true));
+
+        timedAttempt.whenComplete((res, ex) -> {
+            attemptEvent.complete(eventId, attempt + 1, ex == null ? PublishStageEvent.SUCCESS : PublishStageEvent.FAILURE);
+            if (ex != null && isTimeout(ex)) {
+                // Cancel the stuck attempt so its underlying send is released
+                attemptFuture.cancel(true);
+            }
+            if (result.isDone()) {
+                return;
+            }
             if (ex == null) {
                 // Complete successfully if no exception occurred
                 result.complete(res);
@@ -87,9 +201,23 @@ public class RetryUtils {
                     result.completeExceptionally(ex);
                 } else {
                     // Retry the operation
-                    retryAsyncInternal(operation, context, nextAttempt, result);
+                    retryAsyncInternal(operation, context, eventId, deadlines, nextAttempt, result);
                 }
             }
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks whether a failure was caused by an attempt timeout.
+     */
+    private static boolean isTimeout(Throwable ex) {
+        Throwable cause = ex;
+        while (cause != null) {
+            if (cause instanceof TimeoutException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+}
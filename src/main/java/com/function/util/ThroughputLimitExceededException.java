@@ -0,0 +1,12 @@
+package com.function.util;
+
+/**
+ * Thrown when a publish is rejected by the client-side ThroughputLimiter
+ * because the namespace's ingress capacity is currently used up.
+ */
+public class ThroughputLimitExceededException extends RuntimeException {
+
+    public ThroughputLimitExceededException(String message) {
+        super(message);
+    }
+}
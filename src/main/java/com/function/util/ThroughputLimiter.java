@@ -0,0 +1,193 @@
+package com.function.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side token bucket that shapes publish traffic to the ingress limits of an Event Hubs namespace.
+ * Capacity is tracked in two dimensions at once (bytes per second and events per second), so a publish
+ * is only admitted when both budgets allow it.
+ *
+ * The limiter is lock-free: both buckets are held in a single immutable state object that is swapped
+ * with compare-and-set, which makes one instance safe to share across every publishing thread.
+ * Internally it uses the GCRA ("virtual scheduling") formulation, where each bucket is represented by
+ * the theoretical time at which it will be empty again, rather than a token count that needs refilling.
+ */
+public class ThroughputLimiter {
+
+    // Ingress allowance of a single Standard tier throughput unit: 1 MB/s or 1000 events/s
+    private static final long BYTES_PER_THROUGHPUT_UNIT = 1024L * 1024L;
+    private static final long EVENTS_PER_THROUGHPUT_UNIT = 1000L;
+
+    // Conservative planning figure for a single Premium tier processing unit, which has no hard ingress quota
+    private static final long BYTES_PER_PROCESSING_UNIT = 5L * 1024L * 1024L;
+    private static final long EVENTS_PER_PROCESSING_UNIT = 5000L;
+
+    // Burst tolerance: how much unused capacity may be accumulated while the publisher is idle
+    private static final long BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * What the limiter does when a publish exceeds the currently available capacity.
+     */
+    public enum Mode {
+        // Reserve the capacity and make the caller wait until it becomes available
+        WAIT,
+        // Reject the publish immediately with a ThroughputLimitExceededException
+        REJECT
+    }
+
+    private final long bytesPerSecond;
+    private final long eventsPerSecond;
+    private final Mode mode;
+    private final LongSupplier nanoClock;
+
+    // Theoretical "bucket empty" times of both dimensions, swapped atomically as one unit
+    private final AtomicReference<State> state;
+
+    /**
+     * Creates a limiter with explicit capacities. A capacity of zero or less disables that dimension.
+     *
+     * @param bytesPerSecond  The sustained number of bytes that may be published per second.
+     * @param eventsPerSecond The sustained number of events that may be published per second.
+     * @param mode            Whether callers wait for capacity or are rejected.
+     */
+    public ThroughputLimiter(long bytesPerSecond, long eventsPerSecond, Mode mode) {
+        this(bytesPerSecond, eventsPerSecond, mode, System::nanoTime);
+    }
+
+    // Visible for tests so that time can be controlled deterministically
+    ThroughputLimiter(long bytesPerSecond, long eventsPerSecond, Mode mode, LongSupplier nanoClock) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.eventsPerSecond = eventsPerSecond;
+        this.mode = mode;
+        this.nanoClock = nanoClock;
+        long now = nanoClock.getAsLong();
+        this.state = new AtomicReference<>(new State(now, now));
+    }
+
+    /**
+     * Creates a limiter that admits every publish immediately.
+     *
+     * @return A ThroughputLimiter with both dimensions disabled.
+     */
+    public static ThroughputLimiter unlimited() {
+        return new ThroughputLimiter(0, 0, Mode.WAIT);
+    }
+
+    /**
+     * Creates a limiter sized for a Standard tier namespace with the given number of throughput units.
+     *
+     * @param throughputUnits The number of throughput units provisioned on the namespace.
+     * @param mode            Whether callers wait for capacity or are rejected.
+     * @return A ThroughputLimiter matching the namespace's ingress quota.
+     */
+    public static ThroughputLimiter forThroughputUnits(int throughputUnits, Mode mode) {
+        return new ThroughputLimiter(
+            throughputUnits * BYTES_PER_THROUGHPUT_UNIT,
+            throughputUnits * EVENTS_PER_THROUGHPUT_UNIT,
+            mode);
+    }
+
+    /**
+     * Creates a limiter sized for a Premium tier namespace with the given number of processing units.
+     *
+     * @param processingUnits The number of processing units provisioned on the namespace.
+     * @param mode            Whether callers wait for capacity or are rejected.
+     * @return A ThroughputLimiter using a conservative per-processing-unit ingress figure.
+     */
+    public static ThroughputLimiter forProcessingUnits(int processingUnits, Mode mode) {
+        return new ThroughputLimiter(
+            processingUnits * BYTES_PER_PROCESSING_UNIT,
+            processingUnits * EVENTS_PER_PROCESSING_UNIT,
+            mode);
+    }
+
+    /**
+     * Reserves capacity for a publish and returns how long the caller has to wait before sending.
+     * In WAIT mode the capacity is always reserved, possibly in the future.
+     * In REJECT mode nothing is reserved unless the capacity is available right now.
+     *
+     * @param bytes  The number of bytes about to be published.
+     * @param events The number of events about to be published.
+     * @return The number of nanoseconds to wait before sending, or 0 if the publish may proceed immediately.
+     * @throws ThroughputLimitExceededException If the limiter is in REJECT mode and capacity is not available.
+     */
+    public long reserve(long bytes, int events) {
+        return reserve(bytes, events, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reserves capacity for a publish unless the caller would have to wait longer than maxWaitNanos for it.
+     * In WAIT mode a publish is rejected, without reserving anything, once its wait would exceed the limit,
+     * so callers cannot book capacity arbitrarily far ahead. In REJECT mode the limit is always zero.
+     *
+     * @param bytes       The number of bytes about to be published.
+     * @param events      The number of events about to be published.
+     * @param maxWaitNanos The longest wait the caller accepts; 0 only admits a publish that may proceed immediately.
+     * @return The number of nanoseconds to wait before sending, or 0 if the publish may proceed immediately.
+     * @throws ThroughputLimitExceededException If the wait would exceed the limit.
+     */
+    public long reserve(long bytes, int events, long maxWaitNanos) {
+        if (bytesPerSecond <= 0 && eventsPerSecond <= 0) {
+            return 0L;
+        }
+
+        while (true) {
+            long now = nanoClock.getAsLong();
+            State current = state.get();
+
+            // A bucket that has been idle cannot be "emptier" than now; unused capacity beyond the burst is lost
+            long bytesTat = Math.max(current.bytesTat(), now) + costNanos(bytes, bytesPerSecond);
+            long eventsTat = Math.max(current.eventsTat(), now) + costNanos(events, eventsPerSecond);
+            long waitNanos = Math.max(0L, Math.max(bytesTat, eventsTat) - BURST_NANOS - now);
+
+            if (waitNanos > (mode == Mode.REJECT ? 0L : maxWaitNanos)) {
+                throw new ThroughputLimitExceededException(
+                    "Throughput limit exceeded: " + bytes + " bytes / " + events + " events would need "
+                        + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms of capacity");
+            }
+
+            if (state.compareAndSet(current, new State(bytesTat, eventsTat))) {
+                return waitNanos;
+            }
+        }
+    }
+
+    /**
+     * Reserves capacity for a publish and blocks the calling thread until it is available.
+     *
+     * @param bytes  The number of bytes about to be published.
+     * @param events The number of events about to be published.
+     * @throws ThroughputLimitExceededException If the limiter is in REJECT mode and capacity is not available.
+     */
+    public void acquire(long bytes, int events) {
+        long deadline = nanoClock.getAsLong() + reserve(bytes, events);
+        long remaining;
+        while ((remaining = deadline - nanoClock.getAsLong()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new ThroughputLimitExceededException("Interrupted while waiting for throughput capacity");
+            }
+        }
+    }
+
+    /**
+     * Converts an amount of a resource into the time it occupies in a bucket of the given rate.
+     */
+    private static long costNanos(long amount, long perSecond) {
+        if (perSecond <= 0) {
+            return 0L;
+        }
+        return amount * NANOS_PER_SECOND / perSecond;
+    }
+
+    /**
+     * Immutable snapshot of both buckets so they can be updated with a single compare-and-set.
+     */
+    private record State(long bytesTat, long eventsTat) {
+    }
+}
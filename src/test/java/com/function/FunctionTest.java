@@ -1,5 +1,6 @@
 package com.function;
 
+import com.function.pipeline.TransformPipeline;
 import com.microsoft.azure.functions.*;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -50,4 +51,78 @@ public class FunctionTest {
         // Verify
         assertEquals(HttpStatus.OK, ret.getStatus());
     }
+
+    /**
+     * Unit test for the Event Hub triggered pipeline method.
+     */
+    @Test
+    public void testEventHubTriggerPipeline() throws Exception {
+        // Setup
+        final TransformPipeline pipeline = mock(TransformPipeline.class);
+        final List<String> events = Arrays.asList("first", "second");
+
+        final ExecutionContext context = mock(ExecutionContext.class);
+        doReturn(Logger.getGlobal()).when(context).getLogger();
+
+        // Invoke
+        new Function(pipeline).runPipeline(events, context);
+
+        // Verify
+        verify(pipeline).process(events, context);
+    }
+
+    /**
+     * A failed batch fails the invocation so that the host retries it.
+     */
+    @Test
+    public void testEventHubTriggerPipelineFailsBeforeLastRetry() throws Exception {
+        final TransformPipeline pipeline = mock(TransformPipeline.class);
+        final List<String> events = Arrays.asList("first", "second");
+        final RuntimeException failure = new RuntimeException("Send failed");
+        final ExecutionContext context = mockRetryContext(3, 8);
+        doThrow(failure).when(pipeline).process(events, context);
+
+        assertSame(failure, assertThrows(RuntimeException.class, () -> new Function(pipeline).runPipeline(events, context)));
+        verify(pipeline, never()).deadLetter(any(), any(), any());
+    }
+
+    /**
+     * A batch still failing on its last retry is dead-lettered instead of failing the invocation.
+     */
+    @Test
+    public void testEventHubTriggerPipelineDeadLettersOnLastRetry() throws Exception {
+        final TransformPipeline pipeline = mock(TransformPipeline.class);
+        final List<String> events = Arrays.asList("first", "second");
+        final RuntimeException failure = new RuntimeException("Send failed");
+
+        final ExecutionContext context = mockRetryContext(8, 8);
+        doThrow(failure).when(pipeline).process(events, context);
+
+        new Function(pipeline).runPipeline(events, context);
+
+        verify(pipeline).deadLetter(events, failure, context);
+    }
+
+    /**
+     * The pipeline method fails when no pipeline is configured.
+     */
+    @Test
+    public void testEventHubTriggerPipelineWithoutPipeline() throws Exception {
+        final ExecutionContext context = mock(ExecutionContext.class);
+        doReturn(Logger.getGlobal()).when(context).getLogger();
+
+        assertThrows(IllegalStateException.class,
+            () -> new Function().runPipeline(Collections.singletonList("event"), context));
+    }
+
+    private static ExecutionContext mockRetryContext(int retryCount, int maxRetryCount) {
+        final RetryContext retryContext = mock(RetryContext.class);
+        doReturn(retryCount).when(retryContext).getRetrycount();
+        doReturn(maxRetryCount).when(retryContext).getMaxretrycount();
+
+        final ExecutionContext context = mock(ExecutionContext.class);
+        doReturn(Logger.getGlobal()).when(context).getLogger();
+        doReturn(retryContext).when(context).getRetryContext();
+        return context;
+    }
 }
@@ -0,0 +1,62 @@
+package com.function;
+
+import com.function.pipeline.TransformPipeline;
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.spi.inject.FunctionInstanceInjector;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class SpringFunctionInstanceInjectorTest {
+
+    @Test
+    void serviceLoader_shouldFindInjector() {
+        assertThat(ServiceLoader.load(FunctionInstanceInjector.class))
+                .hasAtLeastOneElementOfType(SpringFunctionInstanceInjector.class);
+    }
+
+    @Test
+    void getInstance_shouldBuildFunctionWithPipeline() throws Exception {
+        TransformPipeline pipeline = mock(TransformPipeline.class);
+        ExecutionContext context = mock(ExecutionContext.class);
+        when(context.getLogger()).thenReturn(Logger.getLogger("TestLogger"));
+
+        try (AnnotationConfigApplicationContext applicationContext = new AnnotationConfigApplicationContext()) {
+            applicationContext.registerBean(TransformPipeline.class, () -> pipeline);
+            applicationContext.registerBean(Function.class);
+            applicationContext.refresh();
+
+            Function function = new SpringFunctionInstanceInjector(() -> applicationContext).getInstance(Function.class);
+            List<String> events = Collections.singletonList("event");
+            function.runPipeline(events, context);
+
+            // The worker-facing instance has the pipeline, rather than coming from the no-arg constructor
+            verify(pipeline).process(events, context);
+        }
+    }
+
+    @Test
+    void getInstance_shouldStartApplicationContextOnce() throws Exception {
+        AnnotationConfigApplicationContext applicationContext = new AnnotationConfigApplicationContext();
+        applicationContext.registerBean(TransformPipeline.class, () -> mock(TransformPipeline.class));
+        applicationContext.registerBean(Function.class);
+        applicationContext.refresh();
+        AtomicInteger started = new AtomicInteger();
+        SpringFunctionInstanceInjector injector = new SpringFunctionInstanceInjector(() -> {
+            started.incrementAndGet();
+            return applicationContext;
+        });
+
+        assertThat(injector.getInstance(Function.class)).isSameAs(injector.getInstance(Function.class));
+        assertThat(started.get()).isEqualTo(1);
+        applicationContext.close();
+    }
+}
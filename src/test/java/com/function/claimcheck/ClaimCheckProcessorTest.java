@@ -0,0 +1,128 @@
+package com.function.claimcheck;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClaimCheckProcessorTest {
+
+    @TempDir
+    Path directory;
+
+    private FileSystemClaimCheckStore store;
+    private ClaimCheckProcessor processor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new FileSystemClaimCheckStore(directory);
+        processor = new ClaimCheckProcessor(store, 16);
+    }
+
+    @Test
+    void offload_shouldLeaveSmallPayloadUntouched() {
+        CloudEvent event = eventWithData("small");
+
+        assertThat(processor.offload(event)).isSameAs(event);
+    }
+
+    @Test
+    void offload_shouldReplaceLargePayloadWithReference() throws IOException {
+        CloudEvent event = eventWithData("a payload well above the threshold");
+
+        CloudEvent offloaded = processor.offload(event);
+
+        assertThat(offloaded.getData()).isNull();
+        assertThat(offloaded.getId()).isEqualTo(event.getId());
+        String reference = (String) offloaded.getExtension(ClaimCheckProcessor.REFERENCE_EXTENSION);
+        assertThat(Files.readString(directory.resolve(reference))).isEqualTo("a payload well above the threshold");
+    }
+
+    @Test
+    void resolve_shouldRestoreOffloadedPayload() {
+        CloudEvent event = eventWithData("a payload well above the threshold");
+
+        CloudEvent resolved = processor.resolve(processor.offload(event));
+
+        assertThat(resolved.getData()).isInstanceOf(ClaimCheckData.class);
+        assertThat(new String(resolved.getData().toBytes(), StandardCharsets.UTF_8))
+            .isEqualTo("a payload well above the threshold");
+        assertThat(resolved.getExtensionNames()).doesNotContain(ClaimCheckProcessor.REFERENCE_EXTENSION);
+    }
+
+    @Test
+    void resolve_shouldNotReadStoreUntilDataIsAccessed() throws IOException {
+        CloudEvent offloaded = processor.offload(eventWithData("a payload well above the threshold"));
+        String reference = (String) offloaded.getExtension(ClaimCheckProcessor.REFERENCE_EXTENSION);
+
+        CloudEvent resolved = processor.resolve(offloaded);
+        store.delete(reference);
+
+        // Resolution itself succeeded; only reading the data hits the (now missing) blob
+        assertThatThrownBy(() -> resolved.getData().toBytes())
+            .hasMessageContaining(reference);
+    }
+
+    @Test
+    void store_shouldRejectReferencesOutsideItsDirectory() {
+        assertThatThrownBy(() -> store.open("../outside"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void offload_shouldCompareEncodedSizeWithThreshold() {
+        // 15 bytes fit the threshold raw, but take 20 bytes once base64-encoded in the envelope
+        CloudEvent binary = eventWithData("application/octet-stream", "fifteen bytes!!");
+        CloudEvent json = eventWithData("application/json", "\"fifteen bytes\"");
+
+        assertThat(processor.offload(binary).getExtension(ClaimCheckProcessor.REFERENCE_EXTENSION)).isNotNull();
+        assertThat(processor.offload(json)).isSameAs(json);
+    }
+
+    @Test
+    void discard_shouldRemoveOffloadedPayload() {
+        CloudEvent offloaded = processor.offload(eventWithData("a payload well above the threshold"));
+        String reference = ClaimCheckProcessor.referenceOf(offloaded);
+
+        processor.discard(reference);
+
+        assertThat(directory.resolve(reference)).doesNotExist();
+    }
+
+    @Test
+    void discard_shouldIgnoreEventsThatWereNotOffloaded() {
+        assertThat(ClaimCheckProcessor.referenceOf(eventWithData("small"))).isNull();
+        processor.discard(null);
+    }
+
+    @Test
+    void disabled_shouldNeverOffload() {
+        CloudEvent event = eventWithData("a payload well above the threshold");
+
+        assertThat(ClaimCheckProcessor.disabled().offload(event)).isSameAs(event);
+    }
+
+    private CloudEvent eventWithData(String data) {
+        return eventWithData("text/plain", data);
+    }
+
+    private CloudEvent eventWithData(String contentType, String data) {
+        return CloudEventBuilder.v1()
+            .withId(UUID.randomUUID().toString())
+            .withType("test.type")
+            .withSource(URI.create("/test"))
+            .withData(contentType, data.getBytes(StandardCharsets.UTF_8))
+            .build();
+    }
+}
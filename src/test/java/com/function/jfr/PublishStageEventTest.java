@@ -0,0 +1,119 @@
+package com.function.jfr;
+
+import com.function.util.RetryUtils;
+import com.microsoft.azure.functions.ExecutionContext;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class PublishStageEventTest {
+
+    @TempDir
+    Path directory;
+
+    private ExecutionContext context;
+
+    @BeforeEach
+    void setUp() {
+        context = mock(ExecutionContext.class);
+        when(context.getLogger()).thenReturn(Logger.getLogger("TestLogger"));
+    }
+
+    @Test
+    void retry_shouldRecordEveryAttempt() throws IOException {
+        AtomicInteger counter = new AtomicInteger(0);
+
+        List<RecordedEvent> events = record(PublishRetryAttemptEvent.class, () ->
+            RetryUtils.retry(() -> {
+                if (counter.incrementAndGet() < 2) throw new RuntimeException("fail");
+                return "success";
+            }, context, "event-1"));
+
+        assertThat(events).hasSize(2);
+        assertThat(events).extracting(e -> e.getInt("attempt")).containsExactly(1, 2);
+        assertThat(events).extracting(e -> e.getString("outcome"))
+            .containsExactly(PublishStageEvent.FAILURE, PublishStageEvent.SUCCESS);
+        assertThat(events).allMatch(e -> "event-1".equals(e.getString("eventId")));
+    }
+
+    @Test
+    void complete_shouldPopulateFields() throws IOException {
+        List<RecordedEvent> events = record(PublishSendEvent.class, () -> {
+            PublishSendEvent sendStage = new PublishSendEvent();
+            sendStage.begin();
+            sendStage.complete("event-1", "3", 42, PublishStageEvent.SUCCESS);
+        });
+
+        assertThat(events).hasSize(1);
+        RecordedEvent event = events.get(0);
+        assertThat(event.getString("partition")).isEqualTo("3");
+        assertThat(event.getLong("bytes")).isEqualTo(42);
+    }
+
+    @Test
+    void complete_shouldNotCommitWhenRecordingIsOff() throws IOException {
+        // A recording that has the event disabled must not see it
+        List<RecordedEvent> events = record(PublishSendEvent.class, false, () -> {
+            PublishSendEvent sendStage = new PublishSendEvent();
+            sendStage.begin();
+            sendStage.complete("event-1", null, 42, PublishStageEvent.SUCCESS);
+        });
+
+        assertThat(events).isEmpty();
+    }
+
+    @Test
+    void start_shouldNotAllocateWhenNoRecordingIsRunning() {
+        PublishSendEvent first = PublishSendEvent.start();
+
+        assertThat(PublishSendEvent.start()).isSameAs(first);
+        first.complete("event-1", null, 42, PublishStageEvent.SUCCESS);
+    }
+
+    @Test
+    void start_shouldBeginNewEventWhileRecording() throws IOException {
+        List<RecordedEvent> events = record(PublishSendEvent.class, () -> {
+            PublishSendEvent first = PublishSendEvent.start();
+            assertThat(PublishSendEvent.start()).isNotSameAs(first);
+            first.complete("event-1", "0", 42, PublishStageEvent.SUCCESS);
+        });
+
+        assertThat(events).extracting(e -> e.getString("eventId")).containsExactly("event-1");
+    }
+
+    private List<RecordedEvent> record(Class<? extends PublishStageEvent> eventType, Runnable action) throws IOException {
+        return record(eventType, true, action);
+    }
+
+    private List<RecordedEvent> record(Class<? extends PublishStageEvent> eventType, boolean enabled, Runnable action)
+            throws IOException {
+        Path file = directory.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            if (enabled) {
+                recording.enable(eventType).withoutThreshold();
+            } else {
+                recording.disable(eventType);
+            }
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        String typeName = eventType.getAnnotation(jdk.jfr.Name.class).value();
+        return RecordingFile.readAllEvents(file).stream()
+            .filter(e -> e.getEventType().getName().equals(typeName))
+            .toList();
+    }
+}
@@ -0,0 +1,298 @@
+package com.function.pipeline;
+
+import com.function.claimcheck.ClaimCheckProcessor;
+import com.function.claimcheck.FileSystemClaimCheckStore;
+import com.function.service.EventHubPublisherService;
+import com.function.service.PublishResult;
+import com.function.util.DuplicateEventFilter;
+import com.microsoft.azure.functions.ExecutionContext;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.provider.EventFormatProvider;
+import io.cloudevents.jackson.JsonFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TransformPipelineTest {
+
+    private EventHubPublisherService publisher;
+    private ExecutionContext context;
+    private List<CloudEvent> published;
+
+    @BeforeEach
+    void setUp() {
+        publisher = mock(EventHubPublisherService.class);
+        context = mock(ExecutionContext.class);
+        when(context.getLogger()).thenReturn(Logger.getLogger("TestLogger"));
+        published = new ArrayList<>();
+    }
+
+    @Test
+    void process_shouldRepublishTransformedEventsInInputOrder() {
+        acknowledgeAll();
+        CloudEventTransformer slowEnrich = event -> {
+            sleepRandomly();
+            return CloudEventBuilder.v1(event).withExtension("enriched", "yes").build();
+        };
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(slowEnrich), ClaimCheckProcessor.disabled(), new DuplicateEventFilter(100), 8);
+
+        int republished = pipeline.process(messages(50), context);
+
+        assertThat(republished).isEqualTo(50);
+        assertThat(published).extracting(CloudEvent::getId)
+                .containsExactlyElementsOf(IntStream.range(0, 50).mapToObj(String::valueOf).toList());
+        assertThat(published).allMatch(event -> "yes".equals(event.getExtension("enriched")));
+        // The whole batch goes through a single streaming publish
+        verify(publisher, times(1)).publish(any(), eq(context));
+    }
+
+    @Test
+    void process_shouldApplyTransformersInChainOrder() {
+        acknowledgeAll();
+        CloudEventTransformer retype = event -> CloudEventBuilder.v1(event).withType("step.one").build();
+        CloudEventTransformer suffix = event -> CloudEventBuilder.v1(event).withType(event.getType() + ".two").build();
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(retype, suffix), ClaimCheckProcessor.disabled(), new DuplicateEventFilter(100), 4);
+
+        pipeline.process(messages(3), context);
+
+        assertThat(published).extracting(CloudEvent::getType).containsOnly("step.one.two");
+    }
+
+    @Test
+    void process_shouldDropEventsRejectedByATransformer() {
+        acknowledgeAll();
+        CloudEventTransformer evenOnly = event -> Integer.parseInt(event.getId()) % 2 == 0 ? event : null;
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(evenOnly), ClaimCheckProcessor.disabled(), new DuplicateEventFilter(100), 4);
+
+        int republished = pipeline.process(messages(6), context);
+
+        assertThat(republished).isEqualTo(3);
+        assertThat(published).extracting(CloudEvent::getId).containsExactly("0", "2", "4");
+    }
+
+    @Test
+    void process_shouldNotPublishWhenEveryEventIsDropped() {
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(event -> null), ClaimCheckProcessor.disabled(), new DuplicateEventFilter(100), 4);
+
+        assertThat(pipeline.process(messages(3), context)).isZero();
+        verifyZeroInteractions(publisher);
+    }
+
+    @Test
+    void process_shouldThrowWhenOutputBatchIsNotAcknowledged() {
+        RuntimeException cause = new RuntimeException("Send failed");
+        when(publisher.publish(any(), eq(context))).thenAnswer(invocation -> {
+            Flux<CloudEvent> events = invocation.getArgument(0);
+            return events.map(CloudEvent::getId).collectList()
+                    .map(ids -> PublishResult.failure(ids, 0, cause))
+                    .flux();
+        });
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(), ClaimCheckProcessor.disabled(), new DuplicateEventFilter(100), 4);
+
+        assertThatThrownBy(() -> pipeline.process(messages(2), context))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("Failed to republish 2 of 2 events")
+                .hasCause(cause);
+    }
+
+    @Test
+    void process_shouldDeadLetterEventsATransformerFailsOn() {
+        acknowledgeAll();
+        List<String> deadLettered = new ArrayList<>();
+        CloudEventTransformer failOnOne = event -> {
+            if (event.getId().equals("1")) {
+                throw new IllegalStateException("Enrichment unavailable");
+            }
+            return event;
+        };
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(failOnOne), ClaimCheckProcessor.disabled(),
+                new DuplicateEventFilter(100), collectInto(deadLettered), 4);
+
+        List<String> batch = messages(3);
+
+        assertThat(pipeline.process(batch, context)).isEqualTo(2);
+        assertThat(published).extracting(CloudEvent::getId).containsExactly("0", "2");
+        assertThat(deadLettered).containsExactly(batch.get(1));
+    }
+
+    @Test
+    void process_shouldDeadLetterMessagesThatCannotBeDecoded() {
+        acknowledgeAll();
+        List<String> deadLettered = new ArrayList<>();
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(), ClaimCheckProcessor.disabled(),
+                new DuplicateEventFilter(100), collectInto(deadLettered), 4);
+        List<String> batch = new ArrayList<>(messages(2));
+        batch.add(1, "not a cloud event");
+
+        assertThat(pipeline.process(batch, context)).isEqualTo(2);
+        assertThat(published).extracting(CloudEvent::getId).containsExactly("0", "1");
+        assertThat(deadLettered).containsExactly("not a cloud event");
+    }
+
+    @Test
+    void process_shouldDeadLetterEventsWhoseOffloadedPayloadIsMissing(@TempDir Path directory) throws IOException {
+        acknowledgeAll();
+        List<String> deadLettered = new ArrayList<>();
+        ClaimCheckProcessor claimCheckProcessor = new ClaimCheckProcessor(new FileSystemClaimCheckStore(directory), 16);
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(), claimCheckProcessor,
+                new DuplicateEventFilter(100), collectInto(deadLettered), 4);
+        String missing = serialize(CloudEventBuilder.v1()
+                .withId("9")
+                .withType("test.type")
+                .withSource(URI.create("/test"))
+                .withExtension(ClaimCheckProcessor.REFERENCE_EXTENSION, "missing-payload")
+                .build());
+
+        assertThat(pipeline.process(List.of(messages(0).get(0), missing), context)).isEqualTo(1);
+        assertThat(published).extracting(CloudEvent::getId).containsExactly("0");
+        assertThat(deadLettered).containsExactly(missing);
+    }
+
+    @Test
+    void process_shouldThrowWhenAMessageCannotBeDeadLettered() {
+        DeadLetterHandler unavailable = (message, cause, ctx) -> {
+            throw new IllegalStateException("Dead-letter store unavailable");
+        };
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(), ClaimCheckProcessor.disabled(),
+                new DuplicateEventFilter(100), unavailable, 4);
+
+        assertThatThrownBy(() -> pipeline.process(List.of("not a cloud event"), context))
+                .hasMessageContaining("Dead-letter store unavailable");
+        verifyZeroInteractions(publisher);
+    }
+
+    @Test
+    void deadLetter_shouldHandOverEveryMessageOfTheBatch() {
+        List<String> deadLettered = new ArrayList<>();
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(), ClaimCheckProcessor.disabled(),
+                new DuplicateEventFilter(100), collectInto(deadLettered), 4);
+
+        pipeline.deadLetter(messages(2), new RuntimeException("Send failed"), context);
+
+        assertThat(deadLettered).containsExactlyElementsOf(messages(2));
+        verifyZeroInteractions(publisher);
+    }
+
+    @Test
+    void process_shouldDropHedgedDuplicateConsumedFromAnotherPartition() {
+        acknowledgeAll();
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(), ClaimCheckProcessor.disabled(), new DuplicateEventFilter(100), 4);
+
+        // Both copies of hedged event "1" arrive, each in the batch of the partition it was sent to
+        pipeline.process(messages(0, 1, 2), context);
+        int republished = pipeline.process(messages(1, 3), context);
+
+        assertThat(republished).isEqualTo(1);
+        assertThat(published).extracting(CloudEvent::getId).containsExactly("0", "1", "2", "3");
+    }
+
+    @Test
+    void process_shouldDropDuplicateWithinBatch() {
+        acknowledgeAll();
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(), ClaimCheckProcessor.disabled(), new DuplicateEventFilter(100), 4);
+
+        assertThat(pipeline.process(messages(4, 4), context)).isEqualTo(1);
+        assertThat(published).extracting(CloudEvent::getId).containsExactly("4");
+    }
+
+    @Test
+    void process_shouldKeepEventsOfDifferentSourcesSharingAnId() {
+        acknowledgeAll();
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(), ClaimCheckProcessor.disabled(), new DuplicateEventFilter(100), 4);
+        List<String> sameIdOtherSource = messages(1).stream().map(message -> message.replace("\"/test\"", "\"/other\"")).toList();
+
+        pipeline.process(messages(1), context);
+
+        assertThat(pipeline.process(sameIdOtherSource, context)).isEqualTo(1);
+        assertThat(published).extracting(CloudEvent::getSource).containsExactly(URI.create("/test"), URI.create("/other"));
+    }
+
+    @Test
+    void process_shouldRepublishRedeliveredBatchAfterFailure() {
+        AtomicInteger calls = new AtomicInteger();
+        when(publisher.publish(any(), eq(context))).thenAnswer(invocation -> {
+            Flux<CloudEvent> events = invocation.getArgument(0);
+            boolean fail = calls.incrementAndGet() == 1;
+            return events.doOnNext(event -> {
+                        if (!fail) {
+                            published.add(event);
+                        }
+                    })
+                    .map(CloudEvent::getId)
+                    .collectList()
+                    .map(ids -> fail
+                            ? PublishResult.failure(ids, 0, new RuntimeException("Send failed"))
+                            : PublishResult.success(ids, 0))
+                    .flux();
+        });
+        TransformPipeline pipeline = new TransformPipeline(publisher, List.of(), ClaimCheckProcessor.disabled(), new DuplicateEventFilter(100), 4);
+
+        assertThatThrownBy(() -> pipeline.process(messages(2), context)).hasMessage("Failed to republish 2 of 2 events");
+        // The redelivered batch is not mistaken for duplicates of the failed one
+        assertThat(pipeline.process(messages(2), context)).isEqualTo(2);
+        assertThat(published).extracting(CloudEvent::getId).containsExactly("0", "1");
+    }
+
+    private void acknowledgeAll() {
+        when(publisher.publish(any(), eq(context))).thenAnswer(invocation -> {
+            Flux<CloudEvent> events = invocation.getArgument(0);
+            return events.doOnNext(published::add)
+                    .map(CloudEvent::getId)
+                    .collectList()
+                    .map(ids -> PublishResult.success(ids, 0))
+                    .flux();
+        });
+    }
+
+    private static DeadLetterHandler collectInto(List<String> deadLettered) {
+        return (message, cause, ctx) -> {
+            synchronized (deadLettered) {
+                deadLettered.add(message);
+            }
+        };
+    }
+
+    private static List<String> messages(int count) {
+        return messages(IntStream.range(0, count).toArray());
+    }
+
+    private static List<String> messages(int... ids) {
+        return IntStream.of(ids)
+                .mapToObj(i -> CloudEventBuilder.v1()
+                        .withId(String.valueOf(i))
+                        .withType("test.type")
+                        .withSource(URI.create("/test"))
+                        .withData("application/json", ("{\"n\":" + i + "}").getBytes(StandardCharsets.UTF_8))
+                        .build())
+                .map(TransformPipelineTest::serialize)
+                .toList();
+    }
+
+    private static String serialize(CloudEvent event) {
+        return new String(EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE).serialize(event), StandardCharsets.UTF_8);
+    }
+
+    private static void sleepRandomly() {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
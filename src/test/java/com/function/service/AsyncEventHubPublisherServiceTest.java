@@ -2,17 +2,32 @@ package com.function.service;
 
 import com.azure.messaging.eventhubs.EventData;
 import com.azure.messaging.eventhubs.EventHubProducerAsyncClient;
+import com.azure.messaging.eventhubs.models.SendOptions;
+import com.function.claimcheck.ClaimCheckProcessor;
+import com.function.claimcheck.ClaimCheckStore;
+import com.function.config.EventHubClientConfig;
+import com.function.config.EventHubProperties;
+import com.function.util.PublishDeadlines;
+import com.function.util.ThroughputLimitExceededException;
+import com.function.util.ThroughputLimiter;
 import com.microsoft.azure.functions.ExecutionContext;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.builder.CloudEventBuilder;
-import io.cloudevents.kafka.CloudEventSerializer;
+import io.cloudevents.core.format.EventFormat;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import static org.assertj.core.api.Assertions.*;
@@ -21,20 +36,20 @@ import static org.mockito.Mockito.*;
 public class AsyncEventHubPublisherServiceTest {
 
     private EventHubProducerAsyncClient producerAsyncClient;
-    private CloudEventSerializer cloudEventSerializer;
+    private EventFormat eventFormat;
     private ExecutionContext context;
     private AsyncEventHubPublisherService service;
-    private String cloudEventTopic; 
 
     @BeforeEach
     void setUp() {
         producerAsyncClient = mock(EventHubProducerAsyncClient.class);
-        cloudEventSerializer = mock(CloudEventSerializer.class);
+        eventFormat = mock(EventFormat.class);
         context = mock(ExecutionContext.class);
         when(context.getLogger()).thenReturn(Logger.getLogger("TestLogger"));
 
-        service = new AsyncEventHubPublisherService(producerAsyncClient, cloudEventSerializer, cloudEventTopic);
-        cloudEventTopic = "deposit";
+        service = new AsyncEventHubPublisherService(producerAsyncClient, eventFormat,
+                ThroughputLimiter.unlimited(), ClaimCheckProcessor.disabled(), PublishDeadlines.none(), HedgingOptions.disabled(),
+                PartitionSelector.disabled());
     }
 
     @Test
@@ -60,7 +75,7 @@ public class AsyncEventHubPublisherServiceTest {
 
         // Mock the serialization process
         byte[] eventBytes = "mocked-event-bytes".getBytes(); // Mocked serialized bytes
-        when(cloudEventSerializer.serialize(cloudEventTopic, event)).thenReturn(eventBytes);
+        when(eventFormat.serialize(event)).thenReturn(eventBytes);
 
         EventData expectedEventData = new EventData(eventBytes);
 
@@ -75,6 +90,30 @@ public class AsyncEventHubPublisherServiceTest {
         verify(producerAsyncClient, times(1)).send(Collections.singletonList(expectedEventData));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void publishAsync_shouldPublishWithDefaultEventFormatBean() {
+        // The format bean as configured by default, rather than a mock
+        EventFormat configuredFormat = new EventHubClientConfig(new EventHubProperties()).cloudEventFormat();
+        service = new AsyncEventHubPublisherService(producerAsyncClient, configuredFormat,
+                ThroughputLimiter.unlimited(), ClaimCheckProcessor.disabled(), PublishDeadlines.none(),
+                HedgingOptions.disabled(), PartitionSelector.disabled());
+        when(producerAsyncClient.send(anyList())).thenReturn(Mono.empty());
+        CloudEvent event = CloudEventBuilder.v1(newEvent())
+                .withData("application/json", "{\"amount\":42}".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        assertThatCode(() -> service.publishAsync(event, context).join()).doesNotThrowAnyException();
+        assertThat(service.publish(Flux.just(newEvent()), context).collectList().block())
+                .hasSize(1).allMatch(PublishResult::isSuccess);
+
+        ArgumentCaptor<List<EventData>> sent = ArgumentCaptor.forClass(List.class);
+        verify(producerAsyncClient, times(2)).send(sent.capture());
+        CloudEvent received = configuredFormat.deserialize(sent.getAllValues().get(0).get(0).getBody());
+        assertThat(received.getId()).isEqualTo(event.getId());
+        assertThat(new String(received.getData().toBytes(), StandardCharsets.UTF_8)).isEqualTo("{\"amount\":42}");
+    }
+
     @Test
     void publishAsync_shouldLogAndThrowOnFailure() {
         CloudEvent event = CloudEventBuilder.v1()
@@ -85,7 +124,7 @@ public class AsyncEventHubPublisherServiceTest {
 
         // Mock the serialization process
         byte[] eventBytes = "mocked-event-bytes".getBytes(); // Mocked serialized bytes
-        when(cloudEventSerializer.serialize(cloudEventTopic, event)).thenReturn(eventBytes);
+        when(eventFormat.serialize(event)).thenReturn(eventBytes);
 
         EventData expectedEventData = new EventData(eventBytes);
 
@@ -111,7 +150,7 @@ public class AsyncEventHubPublisherServiceTest {
                 .build();
 
         // Mock the serialization process to throw an exception
-        when(cloudEventSerializer.serialize(cloudEventTopic, event))
+        when(eventFormat.serialize(event))
                 .thenThrow(new RuntimeException("Serialization failed"));
 
         // Call the publishAsync method and verify it throws an exception
@@ -122,4 +161,201 @@ public class AsyncEventHubPublisherServiceTest {
         // Verify that the producerAsyncClient's send method was never called
         verify(producerAsyncClient, never()).send(anyList());
     }
-}
\ No newline at end of file
+
+    @Test
+    void publishAsync_shouldRejectWhenCapacityIsFurtherAwayThanTheDeadline() {
+        service = new AsyncEventHubPublisherService(producerAsyncClient, eventFormat,
+                new ThroughputLimiter(1000, 0, ThroughputLimiter.Mode.WAIT), ClaimCheckProcessor.disabled(),
+                new PublishDeadlines(null, Duration.ofMillis(100)), HedgingOptions.disabled(), PartitionSelector.disabled());
+        // 3000 bytes at 1000 bytes/s need two seconds beyond the burst allowance
+        when(eventFormat.serialize(any())).thenReturn(new byte[3000]);
+
+        assertThatThrownBy(() -> service.publishAsync(newEvent(), context).join())
+                .hasCauseInstanceOf(ThroughputLimitExceededException.class);
+        verify(producerAsyncClient, never()).send(anyList());
+    }
+
+    @Test
+    void publishAsync_shouldKeepOffloadedPayloadWhenSendFails() throws Exception {
+        ClaimCheckStore store = mock(ClaimCheckStore.class);
+        when(store.put(any())).thenReturn("blob-1");
+        service = new AsyncEventHubPublisherService(producerAsyncClient, eventFormat,
+                ThroughputLimiter.unlimited(), new ClaimCheckProcessor(store, 4), PublishDeadlines.none(),
+                HedgingOptions.disabled(), PartitionSelector.disabled());
+        CloudEvent event = CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withType("test.type")
+                .withSource(URI.create("/test"))
+                .withData("application/json", "{\"large\":true}".getBytes())
+                .build();
+        when(eventFormat.serialize(any())).thenReturn("mocked-event-bytes".getBytes());
+        when(producerAsyncClient.send(anyList())).thenReturn(Mono.error(new RuntimeException("Simulated failure")));
+
+        assertThatThrownBy(() -> service.publishAsync(event, context).join())
+                .hasMessageContaining("Simulated failure");
+
+        // The failed send may still have reached the hub, so its consumers may need the payload
+        verify(store, never()).delete(any());
+    }
+
+    @Test
+    void publishAsync_shouldDiscardOffloadedPayloadWhenRejectedByLimiter() throws Exception {
+        ClaimCheckStore store = mock(ClaimCheckStore.class);
+        when(store.put(any())).thenReturn("blob-1");
+        service = new AsyncEventHubPublisherService(producerAsyncClient, eventFormat,
+                new ThroughputLimiter(1000, 0, ThroughputLimiter.Mode.REJECT), new ClaimCheckProcessor(store, 4),
+                PublishDeadlines.none(), HedgingOptions.disabled(), PartitionSelector.disabled());
+        CloudEvent event = CloudEventBuilder.v1(newEvent())
+                .withData("application/json", "{\"large\":true}".getBytes())
+                .build();
+        when(eventFormat.serialize(any())).thenReturn(new byte[3000]);
+
+        assertThatThrownBy(() -> service.publishAsync(event, context).join())
+                .hasCauseInstanceOf(ThroughputLimitExceededException.class);
+
+        verify(store).delete("blob-1");
+    }
+
+    @Test
+    void publish_shouldSendStreamInBatches() {
+        when(eventFormat.serialize(any())).thenReturn("mocked-event-bytes".getBytes());
+        when(producerAsyncClient.send(anyList())).thenReturn(Mono.empty());
+
+        StreamingPublishOptions options = StreamingPublishOptions.builder()
+                .maxBatchEvents(2)
+                .maxBatchWait(Duration.ofSeconds(1))
+                .build();
+
+        List<PublishResult> results = service.publish(Flux.range(0, 5).map(i -> newEvent()), options, context)
+                .collectList()
+                .block();
+
+        // 5 events in batches of at most 2 -> 3 sends
+        assertThat(results).hasSize(3).allMatch(PublishResult::isSuccess);
+        assertThat(results).flatExtracting(PublishResult::getEventIds).hasSize(5);
+        verify(producerAsyncClient, times(3)).send(anyList());
+    }
+
+    @Test
+    void publish_shouldSendKeyedEventsWithTheirPartitionKey() {
+        when(eventFormat.serialize(any())).thenReturn("mocked-event-bytes".getBytes());
+        when(producerAsyncClient.send(anyList())).thenReturn(Mono.empty());
+        when(producerAsyncClient.send(anyList(), any(SendOptions.class))).thenReturn(Mono.empty());
+
+        StreamingPublishOptions options = StreamingPublishOptions.builder()
+                .maxBatchEvents(10)
+                .maxBatchWait(Duration.ofSeconds(1))
+                .build();
+        Flux<CloudEvent> events = Flux.just(
+                keyedEvent("customer-1"), newEvent(), keyedEvent("customer-2"), keyedEvent("customer-1"));
+
+        List<PublishResult> results = service.publish(events, options, context).collectList().block();
+
+        // One batch per key plus one of the unkeyed events
+        assertThat(results).hasSize(3).allMatch(PublishResult::isSuccess);
+        ArgumentCaptor<SendOptions> sent = ArgumentCaptor.forClass(SendOptions.class);
+        verify(producerAsyncClient, times(2)).send(anyList(), sent.capture());
+        assertThat(sent.getAllValues()).extracting(SendOptions::getPartitionKey)
+                .containsExactlyInAnyOrder("customer-1", "customer-2");
+        verify(producerAsyncClient, times(1)).send(anyList());
+        assertThat(results).filteredOn(result -> result.getEventIds().size() == 2).hasSize(1);
+    }
+
+    @Test
+    void publish_shouldRetryFailedBatch() {
+        when(eventFormat.serialize(any())).thenReturn("mocked-event-bytes".getBytes());
+        when(producerAsyncClient.send(anyList()))
+                .thenReturn(Mono.error(new RuntimeException("Simulated failure")))
+                .thenReturn(Mono.empty());
+
+        StreamingPublishOptions options = StreamingPublishOptions.builder()
+                .retryBackoff(Duration.ofMillis(1))
+                .build();
+
+        List<PublishResult> results = service.publish(Flux.just(newEvent()), options, context)
+                .collectList()
+                .block();
+
+        assertThat(results).hasSize(1).allMatch(PublishResult::isSuccess);
+        verify(producerAsyncClient, times(2)).send(anyList());
+    }
+
+    @Test
+    void publish_shouldReportBatchFailureAfterRetries() {
+        when(eventFormat.serialize(any())).thenReturn("mocked-event-bytes".getBytes());
+        when(producerAsyncClient.send(anyList())).thenReturn(Mono.error(new RuntimeException("Simulated failure")));
+
+        StreamingPublishOptions options = StreamingPublishOptions.builder()
+                .retryBackoff(Duration.ofMillis(1))
+                .build();
+
+        List<PublishResult> results = service.publish(Flux.just(newEvent()), options, context)
+                .collectList()
+                .block();
+
+        // The stream completes normally and carries the failure in the result
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).isSuccess()).isFalse();
+        assertThat(results.get(0).getError()).hasMessageContaining("Simulated failure");
+        verify(producerAsyncClient, times(3)).send(anyList());
+    }
+
+    @Test
+    void publishAsync_shouldHedgeSlowSendToAnotherPartition() {
+        service = new AsyncEventHubPublisherService(producerAsyncClient, eventFormat,
+                ThroughputLimiter.unlimited(), ClaimCheckProcessor.disabled(), PublishDeadlines.none(),
+                HedgingOptions.builder().enabled(true).minSamples(0).minDelay(Duration.ofMillis(10)).build(),
+                new PartitionSelector(() -> Mono.just(List.of("0", "1")), Duration.ofMinutes(5), 1.0, 0.2));
+
+        when(eventFormat.serialize(any())).thenReturn("mocked-event-bytes".getBytes());
+        // The primary send never acknowledges; the hedged one does
+        AtomicInteger sends = new AtomicInteger();
+        when(producerAsyncClient.send(anyList(), any(SendOptions.class)))
+                .thenAnswer(invocation -> sends.getAndIncrement() == 0 ? Mono.never() : Mono.empty());
+
+        assertThatCode(() -> service.publishAsync(newEvent(), context).get(5, TimeUnit.SECONDS))
+                .doesNotThrowAnyException();
+
+        // Primary and hedge went to two different partitions
+        ArgumentCaptor<SendOptions> sent = ArgumentCaptor.forClass(SendOptions.class);
+        verify(producerAsyncClient, times(2)).send(anyList(), sent.capture());
+        assertThat(sent.getAllValues()).extracting(SendOptions::getPartitionId).containsExactlyInAnyOrder("0", "1");
+    }
+
+    @Test
+    void publishAsync_shouldHedgeWithoutPartitionSelection() {
+        service = new AsyncEventHubPublisherService(producerAsyncClient, eventFormat,
+                ThroughputLimiter.unlimited(), ClaimCheckProcessor.disabled(), PublishDeadlines.none(),
+                HedgingOptions.builder().enabled(true).minSamples(0).minDelay(Duration.ofMillis(10)).build(),
+                PartitionSelector.disabled());
+
+        when(eventFormat.serialize(any())).thenReturn("mocked-event-bytes".getBytes());
+        when(producerAsyncClient.getPartitionIds()).thenReturn(Flux.just("0", "1"));
+        // The primary send never acknowledges; the hedged one does
+        AtomicInteger sends = new AtomicInteger();
+        when(producerAsyncClient.send(anyList(), any(SendOptions.class)))
+                .thenAnswer(invocation -> sends.getAndIncrement() == 0 ? Mono.never() : Mono.empty());
+
+        assertThatCode(() -> service.publishAsync(newEvent(), context).get(5, TimeUnit.SECONDS))
+                .doesNotThrowAnyException();
+
+        // Partitions come round-robin from the hub, and the two copies went to different ones
+        ArgumentCaptor<SendOptions> sent = ArgumentCaptor.forClass(SendOptions.class);
+        verify(producerAsyncClient, times(2)).send(anyList(), sent.capture());
+        assertThat(sent.getAllValues()).extracting(SendOptions::getPartitionId).containsExactlyInAnyOrder("0", "1");
+    }
+
+    private CloudEvent keyedEvent(String partitionKey) {
+        return CloudEventBuilder.v1(newEvent())
+                .withExtension(AsyncEventHubPublisherService.PARTITION_KEY_EXTENSION, partitionKey)
+                .build();
+    }
+
+    private CloudEvent newEvent() {
+        return CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withType("test.type")
+                .withSource(URI.create("/test"))
+                .build();
+    }
+}
@@ -0,0 +1,184 @@
+package com.function.service;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MultiNamespacePublisherServiceTest {
+
+    private ExecutionContext context;
+    private StandInPublisher first;
+    private StandInPublisher second;
+    private MultiNamespacePublisherService service;
+
+    @BeforeEach
+    void setUp() {
+        context = mock(ExecutionContext.class);
+        when(context.getLogger()).thenReturn(Logger.getLogger("TestLogger"));
+
+        first = new StandInPublisher();
+        second = new StandInPublisher();
+        service = new MultiNamespacePublisherService(List.of(
+                new NamespaceRoute("first", 3, first),
+                new NamespaceRoute("second", 1, second)));
+    }
+
+    @Test
+    void publishAsync_shouldShareTrafficByWeight() {
+        publish(4000);
+
+        double firstShare = first.published.get() / 4000.0;
+        assertThat(firstShare).isBetween(0.70, 0.80);
+    }
+
+    @Test
+    void publishAsync_shouldShiftTrafficAwayFromFailingNamespace() {
+        first.failing = true;
+        publish(500);
+
+        first.published.set(0);
+        second.published.set(0);
+        publish(2000);
+
+        // The failing namespace keeps only its small probing share
+        assertThat(first.published.get()).isLessThan(200);
+    }
+
+    @Test
+    void publishAsync_shouldShiftTrafficBackAfterRecovery() {
+        first.failing = true;
+        publish(500);
+
+        first.failing = false;
+        publish(3000);
+
+        first.published.set(0);
+        second.published.set(0);
+        publish(4000);
+
+        assertThat(first.published.get() / 4000.0).isBetween(0.65, 0.85);
+    }
+
+    @Test
+    void publishAsync_shouldRepublishThroughAnotherNamespaceOnFailure() {
+        first.failing = true;
+
+        for (int i = 0; i < 200; i++) {
+            assertThatCode(() -> service.publishAsync(newEvent(), context).join()).doesNotThrowAnyException();
+        }
+
+        // Every event that went to the failing namespace was republished through the healthy one
+        assertThat(second.published.get()).isEqualTo(200);
+    }
+
+    @Test
+    void publishAsync_shouldFailAfterOneRepublishWhenAllNamespacesFail() {
+        first.failing = true;
+        second.failing = true;
+
+        assertThatThrownBy(() -> service.publishAsync(newEvent(), context).join())
+                .hasRootCauseMessage("Namespace unavailable");
+        assertThat(first.published.get() + second.published.get()).isEqualTo(2);
+    }
+
+    @Test
+    void publish_shouldRouteStreamAcrossNamespaces() {
+        List<PublishResult> results = service.publish(Flux.range(0, 200).map(i -> newEvent()), context)
+                .collectList()
+                .block();
+
+        assertThat(results).flatExtracting(PublishResult::getEventIds).hasSize(200);
+        assertThat(first.published.get()).isPositive();
+        assertThat(second.published.get()).isPositive();
+    }
+
+    @Test
+    void publish_shouldRepublishFailedBatchThroughAnotherNamespace() {
+        first.failing = true;
+
+        List<PublishResult> results = service.publish(Flux.range(0, 200).map(i -> newEvent()), context)
+                .collectList()
+                .block();
+
+        // Every batch that failed in the first namespace was replaced by its successful re-route
+        assertThat(results).allMatch(PublishResult::isSuccess);
+        assertThat(results).flatExtracting(PublishResult::getEventIds).hasSize(200);
+        assertThat(second.published.get()).isEqualTo(200);
+    }
+
+    @Test
+    void publish_shouldShiftStreamAwayFromSlowNamespace() {
+        first.latencyNanos = 50_000_000;
+
+        service.publish(Flux.range(0, 4000).map(i -> newEvent()), context).blockLast();
+
+        // By weight the first namespace would take three quarters of the stream
+        assertThat(first.published.get() / 4000.0).isLessThan(0.3);
+    }
+
+    @Test
+    void publishSync_shouldThrowUnsupportedOperationException() {
+        assertThatThrownBy(() -> service.publishSync(newEvent(), context))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    private void publish(int count) {
+        for (int i = 0; i < count; i++) {
+            service.publishAsync(newEvent(), context).exceptionally(ex -> null).join();
+        }
+    }
+
+    private CloudEvent newEvent() {
+        return CloudEventBuilder.v1()
+                .withId(UUID.randomUUID().toString())
+                .withType("test.type")
+                .withSource(URI.create("/test"))
+                .build();
+    }
+
+    /**
+     * Stand-in for a namespace's publisher that completes immediately, or fails while marked as failing.
+     */
+    private static class StandInPublisher implements EventHubPublisherService {
+
+        private final AtomicInteger published = new AtomicInteger();
+        private volatile boolean failing;
+        private volatile long latencyNanos = 1_000_000;
+
+        @Override
+        public void publishSync(CloudEvent event, ExecutionContext context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Void> publishAsync(CloudEvent event, ExecutionContext context) {
+            published.incrementAndGet();
+            return failing
+                    ? CompletableFuture.failedFuture(new RuntimeException("Namespace unavailable"))
+                    : CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public Flux<PublishResult> publish(Flux<CloudEvent> events, ExecutionContext context) {
+            return events.map(event -> {
+                published.incrementAndGet();
+                return failing
+                        ? PublishResult.failure(List.of(event.getId()), 0, new RuntimeException("Namespace unavailable"))
+                        : PublishResult.success(List.of(event.getId()), 0, latencyNanos);
+            });
+        }
+    }
+}
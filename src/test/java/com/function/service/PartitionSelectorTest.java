@@ -0,0 +1,80 @@
+package com.function.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionSelectorTest {
+
+    @Test
+    void select_shouldReturnNullWhenDisabled() {
+        assertThat(PartitionSelector.disabled().select()).isNull();
+    }
+
+    @Test
+    void select_shouldLoadPartitionIdsOnFirstUse() {
+        AtomicInteger loads = new AtomicInteger();
+        PartitionSelector selector = new PartitionSelector(() -> {
+            loads.incrementAndGet();
+            return Mono.just(List.of("0", "1", "2"));
+        }, Duration.ofMinutes(5), 0.0, 0.2);
+
+        assertThat(selector.select()).isIn("0", "1", "2");
+        assertThat(selector.select()).isIn("0", "1", "2");
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void select_shouldExcludeGivenPartition() {
+        PartitionSelector selector = new PartitionSelector(() -> Mono.just(List.of("0", "1")), Duration.ofMinutes(5), 0.0, 0.2);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(selector.select("0")).isEqualTo("1");
+        }
+    }
+
+    @Test
+    void select_shouldAvoidDegradedPartition() {
+        PartitionSelector selector = new PartitionSelector(() -> Mono.just(List.of("0", "1", "2", "3")), Duration.ofMinutes(5), 0.0, 0.5);
+        selector.select();
+
+        for (int i = 0; i < 10; i++) {
+            selector.recordSuccess("0", 1_000_000);
+            selector.recordSuccess("1", 1_000_000);
+            selector.recordSuccess("2", 1_000_000);
+            selector.recordFailure("3");
+        }
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            counts.merge(selector.select(), 1, Integer::sum);
+        }
+
+        // Without probing, the failing partition always loses the comparison
+        assertThat(counts).doesNotContainKey("3");
+        assertThat(counts).containsKeys("0", "1", "2");
+    }
+
+    @Test
+    void select_shouldProbeDegradedPartition() {
+        PartitionSelector selector = new PartitionSelector(() -> Mono.just(List.of("0", "1")), Duration.ofMinutes(5), 0.5, 0.5);
+        selector.select();
+        for (int i = 0; i < 10; i++) {
+            selector.recordFailure("1");
+        }
+
+        boolean probed = false;
+        for (int i = 0; i < 1000 && !probed; i++) {
+            probed = "1".equals(selector.select());
+        }
+
+        assertThat(probed).isTrue();
+    }
+}
@@ -3,6 +3,9 @@ package com.function.service;
 import com.azure.messaging.eventhubs.EventData;
 import com.azure.messaging.eventhubs.EventHubProducerClient;
 
+import com.function.claimcheck.ClaimCheckProcessor;
+import com.function.util.PublishDeadlines;
+import com.function.util.ThroughputLimiter;
 import com.microsoft.azure.functions.ExecutionContext;
 import io.cloudevents.CloudEvent;
 import io.cloudevents.core.builder.CloudEventBuilder;
@@ -10,6 +13,7 @@ import io.cloudevents.core.provider.EventFormatProvider;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
 
 import java.net.URI;
 import java.util.Collections;
@@ -32,7 +36,9 @@ class SyncEventHubPublisherServiceTest {
         context = mock(ExecutionContext.class);
         when(context.getLogger()).thenReturn(Logger.getLogger("TestLogger"));
 
-        service = new SyncEventHubPublisherService(producerClient, cloudEventTopic);
+        service = new SyncEventHubPublisherService(producerClient, cloudEventTopic,
+                ThroughputLimiter.unlimited(), ClaimCheckProcessor.disabled(), PublishDeadlines.none(),
+                EventFormatProvider.getInstance().resolveFormat("application/cloudevents+json"));
         cloudEventTopic = "test-topic"; // Set a default topic for testing
     }
 
@@ -69,4 +75,11 @@ class SyncEventHubPublisherServiceTest {
                 .isInstanceOf(UnsupportedOperationException.class)
                 .hasMessageContaining("Use AsyncEventHubPublisherService");
     }
+
+    @Test
+    void publish_shouldThrowUnsupportedOperation() {
+        assertThatThrownBy(() -> service.publish(Flux.empty(), context))
+                .isInstanceOf(UnsupportedOperationException.class)
+                .hasMessageContaining("Use AsyncEventHubPublisherService");
+    }
 }
@@ -0,0 +1,28 @@
+package com.function.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentTypesTest {
+
+    @Test
+    void isJson_shouldAcceptJsonMediaTypes() {
+        assertThat(ContentTypes.isJson("application/json")).isTrue();
+        assertThat(ContentTypes.isJson("application/json; charset=utf-8")).isTrue();
+        assertThat(ContentTypes.isJson("text/json")).isTrue();
+        assertThat(ContentTypes.isJson("application/cloudevents+json")).isTrue();
+    }
+
+    @Test
+    void isJson_shouldTreatMissingContentTypeAsJson() {
+        assertThat(ContentTypes.isJson(null)).isTrue();
+    }
+
+    @Test
+    void isJson_shouldRejectOtherMediaTypes() {
+        assertThat(ContentTypes.isJson("text/plain")).isFalse();
+        assertThat(ContentTypes.isJson("application/octet-stream")).isFalse();
+        assertThat(ContentTypes.isJson("application/jsonl")).isFalse();
+    }
+}
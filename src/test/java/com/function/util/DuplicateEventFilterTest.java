@@ -0,0 +1,61 @@
+package com.function.util;
+
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DuplicateEventFilterTest {
+
+    @Test
+    void firstSeen_shouldRejectRepeatedId() {
+        DuplicateEventFilter filter = new DuplicateEventFilter(10);
+
+        assertThat(filter.firstSeen("event-1")).isTrue();
+        assertThat(filter.firstSeen("event-1")).isFalse();
+        assertThat(filter.firstSeen("event-2")).isTrue();
+    }
+
+    @Test
+    void firstSeen_shouldForgetLeastRecentlySeenIdsBeyondCapacity() {
+        DuplicateEventFilter filter = new DuplicateEventFilter(2);
+        filter.firstSeen("event-1");
+        filter.firstSeen("event-2");
+        filter.firstSeen("event-3");
+
+        assertThat(filter.firstSeen("event-1")).isTrue();
+        assertThat(filter.firstSeen("event-3")).isFalse();
+    }
+
+    @Test
+    void keyOf_shouldTellSameIdOfDifferentSourcesApart() {
+        DuplicateEventFilter filter = new DuplicateEventFilter(10);
+
+        assertThat(filter.firstSeen(DuplicateEventFilter.keyOf(event("/orders", "1")))).isTrue();
+        assertThat(filter.firstSeen(DuplicateEventFilter.keyOf(event("/payments", "1")))).isTrue();
+        assertThat(filter.firstSeen(DuplicateEventFilter.keyOf(event("/orders", "1")))).isFalse();
+        // The source/id boundary is part of the key
+        assertThat(DuplicateEventFilter.keyOf(event("/a", "b1"))).isNotEqualTo(DuplicateEventFilter.keyOf(event("/ab", "1")));
+    }
+
+    @Test
+    void forget_shouldLetIdThroughAgain() {
+        DuplicateEventFilter filter = new DuplicateEventFilter(10);
+        filter.firstSeen("event-1");
+
+        filter.forget("event-1");
+
+        assertThat(filter.firstSeen("event-1")).isTrue();
+    }
+
+    private static CloudEvent event(String source, String id) {
+        return CloudEventBuilder.v1()
+                .withId(id)
+                .withType("test.type")
+                .withSource(URI.create(source))
+                .build();
+    }
+}
@@ -0,0 +1,179 @@
+package com.function.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import io.cloudevents.core.format.EventFormat;
+import io.cloudevents.core.provider.EventFormatProvider;
+import io.cloudevents.jackson.JsonFormat;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EnvelopeTemplateEventFormatTest {
+
+    private final EventFormat jsonFormat = EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
+
+    @Test
+    void serialize_shouldBeReadableByJsonFormat() {
+        EnvelopeTemplateEventFormat format = new EnvelopeTemplateEventFormat(16);
+        CloudEvent event = CloudEventBuilder.v1()
+                .withId("42")
+                .withType("order.created")
+                .withSource(URI.create("/orders"))
+                .withDataSchema(URI.create("https://example.com/order.json"))
+                .withSubject("order \"42\"\nline two")
+                .withTime(OffsetDateTime.of(2024, 5, 1, 12, 30, 0, 0, ZoneOffset.UTC))
+                .withExtension("partitionkey", "customer-7")
+                .withExtension("priority", 3)
+                .withExtension("urgent", true)
+                .withData("application/json", "{\"total\":12.5,\"items\":[1,2]}".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        CloudEvent decoded = jsonFormat.deserialize(format.serialize(event));
+
+        assertThat(decoded.getId()).isEqualTo("42");
+        assertThat(decoded.getType()).isEqualTo("order.created");
+        assertThat(decoded.getSource()).isEqualTo(URI.create("/orders"));
+        assertThat(decoded.getDataContentType()).isEqualTo("application/json");
+        assertThat(decoded.getDataSchema()).isEqualTo(URI.create("https://example.com/order.json"));
+        assertThat(decoded.getSubject()).isEqualTo("order \"42\"\nline two");
+        assertThat(decoded.getTime()).isEqualTo(event.getTime());
+        assertThat(decoded.getExtension("partitionkey")).isEqualTo("customer-7");
+        assertThat(decoded.getExtension("priority")).hasToString("3");
+        assertThat(decoded.getExtension("urgent")).isEqualTo(true);
+        assertThat(new String(decoded.getData().toBytes(), StandardCharsets.UTF_8))
+                .isEqualTo("{\"total\":12.5,\"items\":[1,2]}");
+    }
+
+    @Test
+    void serialize_shouldEncodeNonJsonData() {
+        EnvelopeTemplateEventFormat format = new EnvelopeTemplateEventFormat(16);
+        byte[] binary = {0, 1, 2, (byte) 0xff};
+        CloudEvent textEvent = CloudEventBuilder.v1(event("1", "/text"))
+                .withData("text/plain", "héllo \"world\"".getBytes(StandardCharsets.UTF_8))
+                .build();
+        CloudEvent binaryEvent = CloudEventBuilder.v1(event("2", "/binary"))
+                .withData("application/octet-stream", binary)
+                .build();
+
+        assertThat(jsonFormat.deserialize(format.serialize(textEvent)).getData().toBytes())
+                .isEqualTo("héllo \"world\"".getBytes(StandardCharsets.UTF_8));
+        // Text is encoded like JsonFormat encodes it by default
+        assertThat(new String(format.serialize(textEvent), StandardCharsets.UTF_8)).contains("\"data_base64\"");
+        assertThat(new String(jsonFormat.serialize(textEvent), StandardCharsets.UTF_8)).contains("\"data_base64\"");
+        assertThat(jsonFormat.deserialize(format.serialize(binaryEvent)).getData().toBytes())
+                .isEqualTo(binary);
+    }
+
+    @Test
+    void serialize_shouldKeepEnvelopeValidForEmptyJsonData() throws Exception {
+        EnvelopeTemplateEventFormat format = new EnvelopeTemplateEventFormat(16);
+        CloudEvent declared = CloudEventBuilder.v1(event("1", "/empty")).withData("application/json", new byte[0]).build();
+        CloudEvent undeclared = CloudEventBuilder.v1(event("2", "/empty")).withData(new byte[0]).build();
+
+        for (CloudEvent event : new CloudEvent[] {declared, undeclared}) {
+            JsonNode envelope = new ObjectMapper().readTree(format.serialize(event));
+
+            assertThat(envelope.has("data")).isFalse();
+            assertThat(envelope.get("data_base64").asText()).isEmpty();
+        }
+    }
+
+    @Test
+    void serialize_shouldBase64EncodeDataMislabelledAsJson() throws Exception {
+        EnvelopeTemplateEventFormat format = new EnvelopeTemplateEventFormat(16);
+        byte[] text = "not json".getBytes(StandardCharsets.UTF_8);
+        CloudEvent event = CloudEventBuilder.v1(event("1", "/mislabelled")).withData("application/json", text).build();
+
+        byte[] serialized = format.serialize(event);
+
+        assertThat(new ObjectMapper().readTree(serialized).has("data_base64")).isTrue();
+        assertThat(jsonFormat.deserialize(serialized).getData().toBytes()).isEqualTo(text);
+    }
+
+    @Test
+    void serialize_shouldEmbedJsonDataSurroundedByWhitespace() {
+        EnvelopeTemplateEventFormat format = new EnvelopeTemplateEventFormat(16);
+        CloudEvent event = CloudEventBuilder.v1(event("1", "/padded"))
+                .withData("application/json", " [1,2]\n".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        assertThat(new String(format.serialize(event), StandardCharsets.UTF_8)).contains("\"data\": [1,2]\n");
+    }
+
+    @Test
+    void looksLikeJsonValue_shouldCheckFirstAndLastBytes() {
+        assertThat(List.of("{}", "[1]", "\"a\"", "true", "false", "null", "-1.5e3", " 42 "))
+                .allMatch(json -> EnvelopeTemplateEventFormat.looksLikeJsonValue(json.getBytes(StandardCharsets.UTF_8)));
+        assertThat(List.of("", "  ", "\"", "{", "[1}", "text", "1a", "<xml/>"))
+                .noneMatch(json -> EnvelopeTemplateEventFormat.looksLikeJsonValue(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void serialize_shouldReuseTemplateAcrossEventsOfAStream() {
+        EnvelopeTemplateEventFormat format = new EnvelopeTemplateEventFormat(16);
+
+        format.serialize(event("1", "/orders"));
+        format.serialize(event("2", "/orders"));
+        assertThat(format.cachedTemplates()).isEqualTo(1);
+
+        format.serialize(event("3", "/payments"));
+        assertThat(format.cachedTemplates()).isEqualTo(2);
+    }
+
+    @Test
+    void serialize_shouldKeepCacheWithinCapacity() {
+        EnvelopeTemplateEventFormat format = new EnvelopeTemplateEventFormat(2);
+
+        for (int i = 0; i < 10; i++) {
+            CloudEvent event = event(String.valueOf(i), "/source-" + i);
+            assertThat(jsonFormat.deserialize(format.serialize(event)).getSource()).isEqualTo(event.getSource());
+        }
+
+        assertThat(format.cachedTemplates()).isEqualTo(2);
+    }
+
+    @Test
+    void serialize_shouldEvictLeastRecentlyUsedTemplate() {
+        EnvelopeTemplateEventFormat format = new EnvelopeTemplateEventFormat(2);
+
+        format.serialize(event("1", "/orders"));
+        format.serialize(event("2", "/payments"));
+        // Using /orders again makes /payments the least recently used template
+        format.serialize(event("3", "/orders"));
+        format.serialize(event("4", "/refunds"));
+
+        assertThat(format.cachedTemplates()).isEqualTo(2);
+        assertThat(format.isCached(event("5", "/orders"))).isTrue();
+        assertThat(format.isCached(event("6", "/refunds"))).isTrue();
+        assertThat(format.isCached(event("7", "/payments"))).isFalse();
+    }
+
+    @Test
+    void serialize_shouldNotLeakAttributesBetweenEventsOfATemplate() {
+        EnvelopeTemplateEventFormat format = new EnvelopeTemplateEventFormat(16);
+        CloudEvent withSubject = CloudEventBuilder.v1(event("1", "/orders")).withSubject("first").build();
+
+        format.serialize(withSubject);
+        CloudEvent decoded = jsonFormat.deserialize(format.serialize(event("2", "/orders")));
+
+        assertThat(decoded.getId()).isEqualTo("2");
+        assertThat(decoded.getSubject()).isNull();
+    }
+
+    private static CloudEvent event(String id, String source) {
+        return CloudEventBuilder.v1()
+                .withId(id)
+                .withType("test.type")
+                .withSource(URI.create(source))
+                .build();
+    }
+}
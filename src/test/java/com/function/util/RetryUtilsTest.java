@@ -4,7 +4,9 @@ import com.microsoft.azure.functions.ExecutionContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
@@ -82,4 +84,52 @@ class RetryUtilsTest {
 
         assertThat(counter.get()).isEqualTo(3);
     }
-} 
\ No newline at end of file
+
+    @Test
+    void retryAsync_shouldCancelAndRetryAttemptThatExceedsTimeout() {
+        AtomicInteger counter = new AtomicInteger(0);
+        CompletableFuture<Void> stuck = new CompletableFuture<>();
+
+        CompletableFuture<Void> future = RetryUtils.retryAsync(() -> {
+            if (counter.incrementAndGet() == 1) {
+                return stuck;
+            }
+            return CompletableFuture.completedFuture(null);
+        }, context, "event-1", new PublishDeadlines(Duration.ofMillis(50), null));
+
+        assertThatCode(future::join).doesNotThrowAnyException();
+        assertThat(counter.get()).isEqualTo(2);
+        assertThat(stuck.isCancelled()).isTrue();
+    }
+
+    @Test
+    void retryAsync_shouldFailWhenOverallDeadlinePasses() {
+        AtomicInteger counter = new AtomicInteger(0);
+
+        CompletableFuture<Void> future = RetryUtils.retryAsync(() -> {
+            counter.incrementAndGet();
+            return new CompletableFuture<>();
+        }, context, "event-1", new PublishDeadlines(Duration.ofSeconds(10), Duration.ofMillis(50)));
+
+        assertThatThrownBy(future::join).hasCauseInstanceOf(TimeoutException.class);
+        assertThat(counter.get()).isEqualTo(1);
+    }
+
+    @Test
+    void retry_shouldStopRetryingAfterOverallDeadline() {
+        AtomicInteger counter = new AtomicInteger(0);
+
+        assertThatThrownBy(() -> RetryUtils.retry(() -> {
+            counter.incrementAndGet();
+            try {
+                Thread.sleep(60);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException("fail");
+        }, context, "event-1", new PublishDeadlines(null, Duration.ofMillis(50))))
+          .hasMessageContaining("Operation exceeded its deadline");
+
+        assertThat(counter.get()).isEqualTo(1);
+    }
+}
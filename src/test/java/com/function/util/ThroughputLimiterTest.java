@@ -0,0 +1,91 @@
+package com.function.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ThroughputLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(0);
+
+    @Test
+    void reserve_shouldAdmitBurstWithoutWaiting() {
+        ThroughputLimiter limiter = new ThroughputLimiter(1000, 10, ThroughputLimiter.Mode.WAIT, clock::get);
+
+        // One second worth of capacity is available up front
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.reserve(100, 1)).isZero();
+        }
+    }
+
+    @Test
+    void reserve_shouldReturnWaitWhenEventBudgetIsExhausted() {
+        ThroughputLimiter limiter = new ThroughputLimiter(0, 10, ThroughputLimiter.Mode.WAIT, clock::get);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.reserve(0, 1);
+        }
+
+        // The 11th event has to wait for one event interval (100 ms at 10 events/s)
+        assertThat(limiter.reserve(0, 1)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void reserve_shouldReturnWaitWhenByteBudgetIsExhausted() {
+        ThroughputLimiter limiter = new ThroughputLimiter(1000, 0, ThroughputLimiter.Mode.WAIT, clock::get);
+
+        assertThat(limiter.reserve(1000, 1)).isZero();
+        assertThat(limiter.reserve(500, 1)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    void reserve_shouldRefillAsTimePasses() {
+        ThroughputLimiter limiter = new ThroughputLimiter(1000, 0, ThroughputLimiter.Mode.WAIT, clock::get);
+
+        limiter.reserve(1000, 1);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+
+        assertThat(limiter.reserve(500, 1)).isZero();
+    }
+
+    @Test
+    void reserve_shouldRejectWithoutConsumingCapacityInRejectMode() {
+        ThroughputLimiter limiter = new ThroughputLimiter(1000, 0, ThroughputLimiter.Mode.REJECT, clock::get);
+
+        limiter.reserve(1000, 1);
+
+        assertThatThrownBy(() -> limiter.reserve(1, 1))
+            .isInstanceOf(ThroughputLimitExceededException.class)
+            .hasMessageContaining("Throughput limit exceeded");
+
+        // The rejected publish must not have pushed the bucket further out
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(limiter.reserve(1, 1)).isZero();
+    }
+
+    @Test
+    void reserve_shouldRejectWaitBeyondLimitWithoutConsumingCapacity() {
+        ThroughputLimiter limiter = new ThroughputLimiter(1000, 0, ThroughputLimiter.Mode.WAIT, clock::get);
+        long limit = TimeUnit.MILLISECONDS.toNanos(400);
+
+        limiter.reserve(1000, 1);
+
+        // 500 bytes would need 500 ms of capacity, more than the caller accepts
+        assertThatThrownBy(() -> limiter.reserve(500, 1, limit))
+            .isInstanceOf(ThroughputLimitExceededException.class);
+        assertThat(limiter.reserve(300, 1, limit)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(300));
+    }
+
+    @Test
+    void unlimited_shouldNeverWait() {
+        ThroughputLimiter limiter = ThroughputLimiter.unlimited();
+
+        for (int i = 0; i < 100_000; i++) {
+            assertThat(limiter.reserve(1024 * 1024, 1)).isZero();
+        }
+    }
+}